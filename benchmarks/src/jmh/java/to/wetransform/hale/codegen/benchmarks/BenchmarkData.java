@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.equinox.nonosgi.registry.RegistryFactoryHelper;
+
+import eu.esdihumboldt.hale.common.core.io.IOProviderConfigurationException;
+import eu.esdihumboldt.hale.common.core.io.report.IOReport;
+import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.io.gml.reader.internal.GmlInstanceReader;
+import eu.esdihumboldt.hale.io.xsd.model.XmlIndex;
+import eu.esdihumboldt.hale.io.xsd.reader.XmlSchemaReader;
+import to.wetransform.hale.codegen.model.ModelInfo;
+
+/**
+ * Loads the test schemas and data shared by the benchmarks.
+ */
+public class BenchmarkData {
+
+  /**
+   * Schema of the hydro example data.
+   */
+  public static final String HYDRO_SCHEMA = "/geometry/hydroEx.xsd";
+
+  /**
+   * Hydro example data, compressed with GZIP.
+   */
+  public static final String HYDRO_DATA = "/geometry/hydroEx_River.gml.gz";
+
+  /**
+   * Simple test schema.
+   */
+  public static final String SIMPLE_SCHEMA = "/simple/city.xsd";
+
+  /**
+   * Name of the generated model class, located in the default package as the
+   * hydro example namespace does not translate to a package name.
+   */
+  private static final String MODEL_CLASS = "Model";
+
+  /**
+   * Load an XML schema from the classpath.
+   *
+   * @param resource the schema resource
+   * @return the loaded schema
+   */
+  public static XmlIndex loadSchema(String resource) throws IOProviderConfigurationException, IOException, URISyntaxException {
+    // initialize hale»studio registry
+    RegistryFactoryHelper.getRegistry();
+
+    XmlSchemaReader reader = new XmlSchemaReader();
+    reader.setSource(new DefaultInputSupplier(BenchmarkData.class.getResource(resource).toURI()));
+    reader.setOnlyElementsMappable(true);
+    IOReport report = reader.execute(null);
+    if (!report.isSuccess()) {
+      throw new IllegalStateException("Loading XML schema failed");
+    }
+    return reader.getSchema();
+  }
+
+  /**
+   * Load all instances from a GZIP compressed GML file on the classpath into
+   * memory.
+   *
+   * @param schema the schema of the GML file
+   * @param resource the GML resource
+   * @return the loaded instances
+   */
+  public static List<Instance> loadInstances(XmlIndex schema, String resource) throws IOProviderConfigurationException, IOException {
+    File gmlFile = File.createTempFile("benchmark", ".gml");
+    gmlFile.deleteOnExit();
+    try (InputStream in = new GZIPInputStream(BenchmarkData.class.getResourceAsStream(resource))) {
+      Files.copy(in, gmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    GmlInstanceReader reader = new GmlInstanceReader();
+    reader.setSourceSchema(schema);
+    reader.setSource(new DefaultInputSupplier(gmlFile.toURI()));
+    IOReport report = reader.execute(null);
+    if (!report.isSuccess()) {
+      throw new IllegalStateException("Loading GML failed");
+    }
+
+    List<Instance> instances = new ArrayList<>();
+    try (ResourceIterator<Instance> it = reader.getInstances().iterator()) {
+      while (it.hasNext()) {
+        instances.add(it.next());
+      }
+    }
+    return instances;
+  }
+
+  /**
+   * Create the model generated for the hydro example schema.
+   *
+   * @return the generated model
+   */
+  public static ModelInfo createModel() throws ReflectiveOperationException {
+    return (ModelInfo) Class.forName(MODEL_CLASS).newInstance();
+  }
+
+}
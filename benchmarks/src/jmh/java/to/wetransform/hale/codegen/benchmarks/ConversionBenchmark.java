@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.io.xsd.model.XmlIndex;
+import to.wetransform.hale.codegen.instances.ConverterRegistry;
+import to.wetransform.hale.codegen.instances.InstanceConverter;
+import to.wetransform.hale.codegen.instances.ValueInterner;
+import to.wetransform.hale.codegen.model.ModelInfo;
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Compares the throughput of the reflective conversion with the conversion
+ * using the generated converters, in both directions, on the hydro example
+ * data. The conversion to model objects is also measured with deduplication
+ * of string values, the deduplication statistics of one conversion of the
+ * data are reported as counters of that benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+  /**
+   * Deduplication statistics, included in the benchmark results.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Deduplication {
+
+    public long internHits;
+    public long internMisses;
+    public long internSavedBytes;
+
+  }
+
+  private XmlIndex schema;
+  private ModelInfo model;
+  private List<Instance> instances;
+  private List<Class<? extends ModelObject>> modelClasses;
+  private List<ModelObject> objects;
+
+  private InstanceConverter reflectiveConverter;
+  private InstanceConverter generatedConverter;
+  private InstanceConverter internedConverter;
+
+  private long internHits;
+  private long internMisses;
+  private long internSavedBytes;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    schema = BenchmarkData.loadSchema(BenchmarkData.HYDRO_SCHEMA);
+    model = BenchmarkData.createModel();
+
+    reflectiveConverter = new InstanceConverter();
+    generatedConverter = new InstanceConverter((ConverterRegistry) model);
+    ValueInterner interner = new ValueInterner().addType(String.class);
+    internedConverter = new InstanceConverter((ConverterRegistry) model, null, interner);
+
+    // only use instances that have a corresponding model class
+    instances = new ArrayList<>();
+    modelClasses = new ArrayList<>();
+    for (Instance instance : BenchmarkData.loadInstances(schema, BenchmarkData.HYDRO_DATA)) {
+      Class<? extends ModelObject> modelClass = model.getModelClass(instance.getDefinition().getName());
+      if (modelClass != null) {
+        instances.add(instance);
+        modelClasses.add(modelClass);
+      }
+    }
+
+    objects = new ArrayList<>();
+    for (int i = 0; i < instances.size(); i++) {
+      objects.add(reflectiveConverter.convert(instances.get(i), modelClasses.get(i)));
+      internedConverter.convert(instances.get(i), modelClasses.get(i));
+    }
+    internHits = interner.getHitCount();
+    internMisses = interner.getMissCount();
+    internSavedBytes = interner.getSavedBytes();
+  }
+
+  @Benchmark
+  public void instanceToModelReflective(Blackhole blackhole) throws Exception {
+    instanceToModel(reflectiveConverter, blackhole);
+  }
+
+  @Benchmark
+  public void instanceToModelGenerated(Blackhole blackhole) throws Exception {
+    instanceToModel(generatedConverter, blackhole);
+  }
+
+  @Benchmark
+  public void instanceToModelInterned(Blackhole blackhole, Deduplication deduplication) throws Exception {
+    instanceToModel(internedConverter, blackhole);
+    deduplication.internHits = internHits;
+    deduplication.internMisses = internMisses;
+    deduplication.internSavedBytes = internSavedBytes;
+  }
+
+  @Benchmark
+  public void modelToInstanceReflective(Blackhole blackhole) throws Exception {
+    modelToInstance(reflectiveConverter, blackhole);
+  }
+
+  @Benchmark
+  public void modelToInstanceGenerated(Blackhole blackhole) throws Exception {
+    modelToInstance(generatedConverter, blackhole);
+  }
+
+  private void instanceToModel(InstanceConverter converter, Blackhole blackhole) throws Exception {
+    for (int i = 0; i < instances.size(); i++) {
+      blackhole.consume(converter.convert(instances.get(i), modelClasses.get(i)));
+    }
+  }
+
+  private void modelToInstance(InstanceConverter converter, Blackhole blackhole) throws Exception {
+    for (ModelObject object : objects) {
+      blackhole.consume(converter.convert(object, schema));
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.io.xsd.model.XmlIndex;
+import to.wetransform.hale.codegen.generator.Generator;
+import to.wetransform.hale.codegen.generator.GeneratorOptions;
+
+/**
+ * Measures the time to generate model classes for the test schemas. Loading
+ * the schema is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+  @Param({ "simple", "geometry" })
+  private String schemaName;
+
+  @Param({ "false", "true" })
+  private boolean parallel;
+
+  private XmlIndex schema;
+  private Collection<? extends TypeDefinition> types;
+  private Path targetFolder;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    switch (schemaName) {
+    case "simple":
+      schema = BenchmarkData.loadSchema(BenchmarkData.SIMPLE_SCHEMA);
+      break;
+    case "geometry":
+      schema = BenchmarkData.loadSchema(BenchmarkData.HYDRO_SCHEMA);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown schema " + schemaName);
+    }
+    types = schema.getMappingRelevantTypes();
+
+    targetFolder = Files.createTempDirectory("generation-benchmark");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.walkFileTree(targetFolder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  @Benchmark
+  public void generateModel() throws IOException {
+    GeneratorOptions options = new GeneratorOptions();
+    options.setParallel(parallel);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    generator.generateModel(types, targetFolder.toFile());
+  }
+
+}
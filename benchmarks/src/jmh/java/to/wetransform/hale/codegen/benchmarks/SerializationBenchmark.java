@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.io.xsd.model.XmlIndex;
+import to.wetransform.hale.codegen.instances.InstanceConverter;
+import to.wetransform.hale.codegen.model.ModelInfo;
+import to.wetransform.hale.codegen.model.ModelObject;
+import to.wetransform.hale.codegen.model.binary.BinaryInput;
+import to.wetransform.hale.codegen.model.binary.BinaryOutput;
+import to.wetransform.hale.codegen.model.binary.CodecRegistry;
+
+/**
+ * Compares writing and reading the model objects of the hydro example data
+ * with Java serialization and with the generated binary codecs. The size
+ * of the serialized data is reported as <code>serializedBytes</code> for the
+ * write benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  /**
+   * Size of the serialized data, included in the benchmark results.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Size {
+
+    public long serializedBytes;
+
+  }
+
+  private CodecRegistry codecs;
+  private List<ModelObject> objects;
+
+  private byte[] javaSerialized;
+  private byte[] codecSerialized;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    XmlIndex schema = BenchmarkData.loadSchema(BenchmarkData.HYDRO_SCHEMA);
+    ModelInfo model = BenchmarkData.createModel();
+    codecs = (CodecRegistry) model;
+
+    InstanceConverter converter = new InstanceConverter();
+    objects = new ArrayList<>();
+    for (Instance instance : BenchmarkData.loadInstances(schema, BenchmarkData.HYDRO_DATA)) {
+      Class<? extends ModelObject> modelClass = model.getModelClass(instance.getDefinition().getName());
+      if (modelClass != null) {
+        objects.add(converter.convert(instance, modelClass));
+      }
+    }
+
+    javaSerialized = writeJava();
+    codecSerialized = writeBinary();
+  }
+
+  @Benchmark
+  public byte[] writeJavaSerialization(Size size) throws Exception {
+    byte[] result = writeJava();
+    size.serializedBytes = result.length;
+    return result;
+  }
+
+  @Benchmark
+  public byte[] writeCodec(Size size) throws Exception {
+    byte[] result = writeBinary();
+    size.serializedBytes = result.length;
+    return result;
+  }
+
+  @Benchmark
+  public void readJavaSerialization(Blackhole blackhole) throws Exception {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaSerialized))) {
+      for (int i = 0; i < objects.size(); i++) {
+        blackhole.consume(in.readObject());
+      }
+    }
+  }
+
+  @Benchmark
+  public void readCodec(Blackhole blackhole) throws Exception {
+    try (BinaryInput in = new BinaryInput(new ByteArrayInputStream(codecSerialized), codecs)) {
+      for (int i = 0; i < objects.size(); i++) {
+        blackhole.consume(in.readObject());
+      }
+    }
+  }
+
+  private byte[] writeJava() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      for (ModelObject object : objects) {
+        out.writeObject(object);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private byte[] writeBinary() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (BinaryOutput out = new BinaryOutput(bytes, codecs)) {
+      for (ModelObject object : objects) {
+        out.writeObject(object);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Manifest listing schemas and the target folders to generate their models
+ * to, for generating multiple models in one run.
+ *
+ * Each line contains a schema location (file or URI) and a target folder,
+ * separated by whitespace. Paths containing whitespace are enclosed in double
+ * quotes, e.g. <code>"my schemas/city.xsd" "target folder"</code>. Relative
+ * file paths are resolved against the folder of the manifest. Empty lines and
+ * lines starting with <code>#</code> are ignored.
+ */
+public class BatchManifest {
+
+  /**
+   * A schema and the target folder for its model.
+   */
+  public static class Entry {
+
+    private final URI schema;
+
+    private final File targetFolder;
+
+    /**
+     * Create a manifest entry.
+     *
+     * @param schema the schema location
+     * @param targetFolder the target folder for the generated model
+     */
+    public Entry(URI schema, File targetFolder) {
+      super();
+      this.schema = schema;
+      this.targetFolder = targetFolder;
+    }
+
+    /**
+     * @return the schema location
+     */
+    public URI getSchema() {
+      return schema;
+    }
+
+    /**
+     * @return the target folder for the generated model
+     */
+    public File getTargetFolder() {
+      return targetFolder;
+    }
+
+  }
+
+  private final List<Entry> entries;
+
+  /**
+   * Create a manifest with the given entries.
+   *
+   * @param entries the manifest entries
+   */
+  public BatchManifest(List<Entry> entries) {
+    super();
+    this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+  }
+
+  /**
+   * @return the manifest entries
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Read a manifest file.
+   *
+   * @param file the manifest file
+   * @return the manifest
+   * @throws IOException if reading the file fails
+   * @throws IllegalArgumentException if a line is not a valid entry
+   */
+  public static BatchManifest read(File file) throws IOException {
+    File baseFolder = file.getAbsoluteFile().getParentFile();
+    List<Entry> entries = new ArrayList<>();
+
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      List<String> parts = split(line);
+      if (parts == null || parts.size() != 2) {
+        throw new IllegalArgumentException("Invalid entry in line " + lineNumber + " of " + file
+            + ", expected schema and target folder: " + line);
+      }
+
+      entries.add(new Entry(resolveSchema(baseFolder, parts.get(0)), resolveFile(baseFolder, parts.get(1))));
+    }
+
+    return new BatchManifest(entries);
+  }
+
+  /**
+   * Split a line into whitespace separated values, values enclosed in double
+   * quotes may contain whitespace.
+   *
+   * @param line the line to split
+   * @return the values or <code>null</code> if a quote is not closed
+   */
+  static List<String> split(String line) {
+    List<String> values = new ArrayList<>();
+    int index = 0;
+    while (index < line.length()) {
+      if (Character.isWhitespace(line.charAt(index))) {
+        index++;
+      }
+      else if (line.charAt(index) == '"') {
+        int end = line.indexOf('"', index + 1);
+        if (end < 0) {
+          return null;
+        }
+        values.add(line.substring(index + 1, end));
+        index = end + 1;
+      }
+      else {
+        int end = index;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+          end++;
+        }
+        values.add(line.substring(index, end));
+        index = end;
+      }
+    }
+    return values;
+  }
+
+  private static URI resolveSchema(File baseFolder, String value) {
+    URI uri = CLI.fileOrUri(value);
+    if ("file".equals(uri.getScheme()) && !new File(value).isAbsolute() && !value.startsWith("file:")) {
+      return new File(baseFolder, value).toURI();
+    }
+    return uri;
+  }
+
+  private static File resolveFile(File baseFolder, String value) {
+    File file = new File(value);
+    return (file.isAbsolute()) ? (file) : (new File(baseFolder, value));
+  }
+
+}
@@ -17,29 +17,231 @@ package to.wetransform.hale.codegen.generator;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.equinox.nonosgi.registry.RegistryFactoryHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import eu.esdihumboldt.hale.common.core.io.IOProviderConfigurationException;
 import eu.esdihumboldt.hale.common.core.io.report.IOReport;
 import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
-import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.io.xsd.reader.XmlSchemaReader;
 
 public class CLI {
 
+  private static final Logger log = LoggerFactory.getLogger(CLI.class);
+
+  private static final String USAGE = "Usage: generator [--primitives] [--converters] [--codecs] [--xml-reader] [--xml-writer] [--parallel] [--incremental] [--schema-cache <folder>] [--profile <file>] [--watch] <uri-to-schema> <target-folder>\n"
+      + "       generator [--primitives] [--converters] [--codecs] [--xml-reader] [--xml-writer] [--parallel] [--incremental] [--schema-cache <folder>] [--profile <file>] [--threads <n>] --batch <manifest>";
+
+  private static volatile boolean registryInitialized;
+
   public static void main(String[] args) throws IOProviderConfigurationException, IOException {
-    URI schema = fileOrUri(args[0]);
-    File targetFolder = new File(args[1]);
+    GeneratorOptions options = new GeneratorOptions();
+    File batchManifest = null;
+    int threads = 1;
+    boolean watch = false;
+    File profileFile = null;
+    List<String> arguments = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.startsWith("--")) {
+        switch (arg) {
+        case "--primitives":
+          options.setPrimitiveFields(true);
+          break;
+        case "--converters":
+          options.setGenerateConverters(true);
+          break;
+        case "--codecs":
+          options.setGenerateCodecs(true);
+          break;
+        case "--xml-reader":
+          options.setGenerateXmlReader(true);
+          break;
+        case "--xml-writer":
+          options.setGenerateXmlWriter(true);
+          break;
+        case "--parallel":
+          options.setParallel(true);
+          break;
+        case "--incremental":
+          options.setIncremental(true);
+          break;
+        case "--schema-cache":
+          options.setSchemaCache(new File(getOptionValue(args, ++i)));
+          break;
+        case "--profile":
+          profileFile = new File(getOptionValue(args, ++i));
+          options.setProfile(new GenerationProfile());
+          break;
+        case "--watch":
+          watch = true;
+          break;
+        case "--batch":
+          batchManifest = new File(getOptionValue(args, ++i));
+          break;
+        case "--threads":
+          try {
+            threads = Integer.parseInt(getOptionValue(args, ++i));
+          } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of threads " + args[i] + "\n" + USAGE);
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg + "\n" + USAGE);
+        }
+      }
+      else {
+        arguments.add(arg);
+      }
+    }
 
-    run(schema, targetFolder);
+    if (batchManifest != null) {
+      if (!arguments.isEmpty() || watch) {
+        throw new IllegalArgumentException(USAGE);
+      }
+      runBatch(BatchManifest.read(batchManifest), options, threads);
+      writeProfile(options, profileFile);
+      return;
+    }
+
+    if (arguments.size() != 2) {
+      throw new IllegalArgumentException(USAGE);
+    }
+
+    URI schema = fileOrUri(arguments.get(0));
+    File targetFolder = new File(arguments.get(1));
+
+    if (watch) {
+      if (profileFile != null) {
+        throw new IllegalArgumentException("Profiling is not supported in watch mode\n" + USAGE);
+      }
+      // only write classes affected by a change
+      options.setIncremental(true);
+      try {
+        new SchemaWatcher(schema, targetFolder, options).watch();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+
+    run(schema, targetFolder, options);
+    writeProfile(options, profileFile);
   }
 
   public static void run(URI schema, File targetFolder) throws IOProviderConfigurationException, IOException {
-    // initialize hale»studio registry
-    RegistryFactoryHelper.getRegistry();
+    run(schema, targetFolder, new GeneratorOptions());
+  }
+
+  public static void run(URI schema, File targetFolder, GeneratorOptions options) throws IOProviderConfigurationException, IOException {
+    long start = System.nanoTime();
+    SchemaModel model;
+    if (options.getSchemaCache() != null) {
+      SchemaCache cache = new SchemaCache(options.getSchemaCache());
+      String key = cache.getKey(schema);
+      model = cache.load(key);
+      if (options.getProfile() != null) {
+        options.getProfile().recordSchemaCache(model != null);
+      }
+      if (model == null) {
+        model = loadSchema(schema);
+        cache.store(key, model);
+      }
+      else {
+        log.info("Using cached schema for " + schema);
+      }
+    }
+    else {
+      model = loadSchema(schema);
+    }
+    if (options.getProfile() != null) {
+      options.getProfile().recordPhase(GenerationProfile.PHASE_SCHEMA_LOADING, System.nanoTime() - start);
+    }
+
+    Generator generator = new Generator(model.getPrefixes(), model.getNamespace(), options);
+    generator.generateModel(model.getTypes(), targetFolder);
+  }
+
+  /**
+   * Generate models for all schemas in a batch manifest in one run. Schemas
+   * are processed concurrently if more than one thread is used. Failing
+   * schemas don't prevent the generation for the other schemas.
+   *
+   * @param manifest the batch manifest
+   * @param options the generator options, used for all schemas
+   * @param threads the number of schemas to process concurrently
+   * @throws IOException if generating a model fails, after all schemas were
+   *   processed
+   */
+  public static void runBatch(BatchManifest manifest, GeneratorOptions options, int threads) throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1");
+    }
+
+    // initialize once instead of per schema
+    initRegistry();
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads,
+        Math.max(1, manifest.getEntries().size())));
+    try {
+      Map<BatchManifest.Entry, Future<?>> results = new LinkedHashMap<>();
+      for (BatchManifest.Entry entry : manifest.getEntries()) {
+        results.put(entry, executor.submit(() -> {
+          log.info("Generating model for " + entry.getSchema() + " in " + entry.getTargetFolder());
+          run(entry.getSchema(), entry.getTargetFolder(), options);
+          return null;
+        }));
+      }
+
+      Throwable firstFailure = null;
+      int failed = 0;
+      for (Map.Entry<BatchManifest.Entry, Future<?>> result : results.entrySet()) {
+        try {
+          result.getValue().get();
+        } catch (ExecutionException e) {
+          log.error("Generating model for " + result.getKey().getSchema() + " failed", e.getCause());
+          if (firstFailure == null) {
+            firstFailure = e.getCause();
+          }
+          failed++;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Batch generation was interrupted");
+        }
+      }
+
+      if (firstFailure != null) {
+        throw new IOException("Generating models failed for " + failed + " of "
+            + results.size() + " schemas", firstFailure);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Load an XML Schema.
+   *
+   * @param schema the schema location
+   * @return the information on the schema needed for generating the model
+   * @throws IOProviderConfigurationException if the schema reader is not
+   *   configured correctly
+   * @throws IOException if loading the schema fails
+   */
+  public static SchemaModel loadSchema(URI schema) throws IOProviderConfigurationException, IOException {
+    initRegistry();
 
     // load XML Schema
     XmlSchemaReader reader = new XmlSchemaReader();
@@ -50,10 +252,36 @@ public class CLI {
       throw new IllegalStateException("Loading XML schema failed");
     }
 
-    Collection<? extends TypeDefinition> types = reader.getSchema().getMappingRelevantTypes();
+    return new SchemaModel(reader.getSchema().getMappingRelevantTypes(), reader.getSchema().getPrefixes(),
+        reader.getSchema().getNamespace());
+  }
+
+  /**
+   * Initialize the hale»studio registry, once per JVM.
+   */
+  private static void initRegistry() {
+    if (!registryInitialized) {
+      synchronized (CLI.class) {
+        if (!registryInitialized) {
+          RegistryFactoryHelper.getRegistry();
+          registryInitialized = true;
+        }
+      }
+    }
+  }
+
+  private static void writeProfile(GeneratorOptions options, File profileFile) throws IOException {
+    if (profileFile != null) {
+      options.getProfile().writeJson(profileFile);
+      log.info("Wrote generation profile to " + profileFile);
+    }
+  }
 
-    Generator generator = new Generator(reader.getSchema().getPrefixes(), reader.getSchema().getNamespace());
-    generator.generateModel(types, targetFolder);
+  private static String getOptionValue(String[] args, int index) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException("Missing value for option " + args[index - 1] + "\n" + USAGE);
+    }
+    return args[index];
   }
 
   /**
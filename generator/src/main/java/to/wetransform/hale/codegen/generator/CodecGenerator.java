@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import to.wetransform.hale.codegen.model.binary.BinaryInput;
+import to.wetransform.hale.codegen.model.binary.BinaryOutput;
+import to.wetransform.hale.codegen.model.binary.CodecRegistry;
+import to.wetransform.hale.codegen.model.binary.ObjectCodec;
+
+/**
+ * Generates an {@link ObjectCodec} for each generated model and group class,
+ * that writes objects in a compact binary format. Properties that are set
+ * are written with a tag derived from their position in the class, followed
+ * by the value in an encoding chosen based on the property type. The
+ * properties of super classes are written first, each class ends its
+ * properties with tag <code>0</code>.
+ */
+class CodecGenerator {
+
+  private final Map<ClassName, ModelClass> classes;
+
+  private final CompanionNames codecNames;
+
+  /**
+   * Create a codec generator.
+   *
+   * @param classes the generated model and group classes
+   */
+  public CodecGenerator(Map<ClassName, ModelClass> classes) {
+    super();
+    this.classes = classes;
+    this.codecNames = new CompanionNames(classes, "Codec");
+  }
+
+  /**
+   * Get the name of the codec class for a model or group class.
+   *
+   * @param className the name of the model or group class
+   * @return the name of the codec class
+   */
+  public ClassName getCodecName(ClassName className) {
+    return codecNames.get(className);
+  }
+
+  /**
+   * Create the codec class for a model or group class.
+   *
+   * @param modelClass the model or group class
+   * @return the Java file of the codec class
+   */
+  public JavaFile createCodec(ModelClass modelClass) {
+    ClassName className = modelClass.getClassName();
+    ClassName codecName = getCodecName(className);
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(codecName)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ParameterizedTypeName.get(ClassName.get(ObjectCodec.class), className));
+
+    builder.addField(FieldSpec.builder(codecName, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer("new $T()", codecName)
+        .build());
+
+    builder.addMethod(MethodSpec.methodBuilder("getType")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(ParameterizedTypeName.get(ClassName.get(Class.class), className))
+        .addStatement("return $T.class", className)
+        .build());
+
+    builder.addMethod(MethodSpec.methodBuilder("write")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(BinaryOutput.class, "out")
+        .addParameter(className, "source")
+        .addException(IOException.class)
+        .addStatement("writeProperties(out, source)")
+        .build());
+
+    builder.addMethod(MethodSpec.methodBuilder("read")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(BinaryInput.class, "in")
+        .addException(IOException.class)
+        .returns(className)
+        .addStatement("$T target = new $T()", className, className)
+        .addStatement("readProperties(in, target)")
+        .addStatement("return target")
+        .build());
+
+    builder.addMethod(createWritePropertiesMethod(modelClass));
+    builder.addMethod(createReadPropertiesMethod(modelClass));
+
+    return JavaFile.builder(codecName.packageName(), builder.build()).build();
+  }
+
+  private MethodSpec createWritePropertiesMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("writeProperties")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(BinaryOutput.class, "out")
+        .addParameter(modelClass.getClassName(), "source")
+        .addException(IOException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.writeProperties(out, source)", getCodecName(modelClass.getSuperclass()));
+    }
+
+    int tag = 0;
+    for (ModelProperty property : modelClass.getProperties()) {
+      tag++;
+      String getter = property.getGetterName();
+      if (property.isMultiple()) {
+        method.beginControlFlow("if (source.$L() != null && !source.$L().isEmpty())", getter, getter)
+            .addStatement("out.writeVarInt($L)", tag)
+            .addStatement("out.writeVarInt(source.$L().size())", getter)
+            .beginControlFlow("for ($T value : source.$L())", property.getType(), getter);
+        if (isNullSafe(property)) {
+          method.addStatement("$L", writeValue(property, CodeBlock.of("value")));
+        }
+        else {
+          // null values in lists need to be marked
+          method.addStatement("out.writeBoolean(value != null)")
+              .beginControlFlow("if (value != null)")
+              .addStatement("$L", writeValue(property, CodeBlock.of("value")))
+              .endControlFlow();
+        }
+        method.endControlFlow()
+            .endControlFlow();
+      }
+      else {
+        method.beginControlFlow("if (source.$L() != null)", getter)
+            .addStatement("out.writeVarInt($L)", tag)
+            .addStatement("$L", writeValue(property, CodeBlock.of("source.$L()", getter)))
+            .endControlFlow();
+      }
+    }
+
+    method.addStatement("out.writeVarInt(0)");
+
+    return method.build();
+  }
+
+  private MethodSpec createReadPropertiesMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("readProperties")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(BinaryInput.class, "in")
+        .addParameter(modelClass.getClassName(), "target")
+        .addException(IOException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.readProperties(in, target)", getCodecName(modelClass.getSuperclass()));
+    }
+
+    method.addStatement("int tag")
+        .beginControlFlow("while ((tag = in.readVarInt()) != 0)")
+        .beginControlFlow("switch (tag)");
+
+    int tag = 0;
+    for (ModelProperty property : modelClass.getProperties()) {
+      tag++;
+      method.addCode("case $L:\n$>", tag);
+      if (property.isMultiple()) {
+        CodeBlock value = readValue(property);
+        if (!isNullSafe(property)) {
+          value = CodeBlock.of("(in.readBoolean()) ? ($L) : (null)", value);
+        }
+        method.beginControlFlow("for (int i = in.readVarInt(); i > 0; i--)")
+            .addStatement("target.$L().add($L)", property.getGetterName(), value)
+            .endControlFlow();
+      }
+      else {
+        method.addStatement("target.$L($L)", property.getSetterName(), readValue(property));
+      }
+      method.addStatement("break")
+          .addCode("$<");
+    }
+
+    method.addCode("default:\n$>")
+        .addStatement("throw new $T($S + tag + $S)", IOException.class, "Unknown property tag ",
+            " for " + modelClass.getClassName())
+        .addCode("$<")
+        .endControlFlow()
+        .endControlFlow();
+
+    return method.build();
+  }
+
+  /**
+   * Determines if the encoding of a property value supports
+   * <code>null</code>.
+   */
+  private boolean isNullSafe(ModelProperty property) {
+    TypeName type = property.getType();
+    return type.equals(ClassName.get(String.class)) || getValueEncoding(type) == null;
+  }
+
+  private CodeBlock writeValue(ModelProperty property, CodeBlock value) {
+    TypeName type = property.getType();
+    if (property.getKind() == ModelProperty.Kind.COMPLEX || property.getKind() == ModelProperty.Kind.GROUP) {
+      return CodeBlock.of("out.writeObject($L, $T.INSTANCE)", value, getCodecName((ClassName) type));
+    }
+    String encoding = getValueEncoding(type);
+    if (encoding == null) {
+      // codec of the value class or Java serialization
+      return CodeBlock.of("out.writeObject($L)", value);
+    }
+    if (type.equals(ClassName.get(Short.class)) || type.equals(ClassName.get(Byte.class))) {
+      return CodeBlock.of("out.writeInt($L)", value);
+    }
+    return CodeBlock.of("out.write$L($L)", encoding, value);
+  }
+
+  private CodeBlock readValue(ModelProperty property) {
+    TypeName type = property.getType();
+    if (property.getKind() == ModelProperty.Kind.COMPLEX || property.getKind() == ModelProperty.Kind.GROUP) {
+      return CodeBlock.of("in.readObject($T.INSTANCE)", getCodecName((ClassName) type));
+    }
+    String encoding = getValueEncoding(type);
+    if (encoding == null) {
+      return CodeBlock.of("($T) in.readObject()", type);
+    }
+    if (type.equals(ClassName.get(Short.class))) {
+      return CodeBlock.of("(short) in.readInt()");
+    }
+    if (type.equals(ClassName.get(Byte.class))) {
+      return CodeBlock.of("(byte) in.readInt()");
+    }
+    if (encoding.equals("Date")) {
+      return CodeBlock.of("new $T(in.readDate())", type);
+    }
+    return CodeBlock.of("in.read$L()", encoding);
+  }
+
+  /**
+   * Get the name of the encoding for a simple value type, that is the
+   * suffix of the respective methods of {@link BinaryOutput} and
+   * {@link BinaryInput}.
+   *
+   * @param type the value type
+   * @return the encoding or <code>null</code> if values of the type are
+   *   written as objects
+   */
+  private static String getValueEncoding(TypeName type) {
+    if (type.equals(ClassName.get(String.class))) {
+      return "String";
+    }
+    if (type.equals(ClassName.get(Integer.class)) || type.equals(ClassName.get(Short.class))
+        || type.equals(ClassName.get(Byte.class))) {
+      return "Int";
+    }
+    if (type.equals(ClassName.get(Long.class))) {
+      return "Long";
+    }
+    if (type.equals(ClassName.get(Double.class))) {
+      return "Double";
+    }
+    if (type.equals(ClassName.get(Float.class))) {
+      return "Float";
+    }
+    if (type.equals(ClassName.get(Boolean.class))) {
+      return "Boolean";
+    }
+    if (type.equals(ClassName.get(BigInteger.class))) {
+      return "BigInteger";
+    }
+    if (type.equals(ClassName.get(BigDecimal.class))) {
+      return "BigDecimal";
+    }
+    if (type.equals(ClassName.get(Date.class)) || type.equals(ClassName.get(java.sql.Date.class))) {
+      return "Date";
+    }
+    if (type.equals(ClassName.get(Timestamp.class))) {
+      return "Timestamp";
+    }
+    return null;
+  }
+
+  /**
+   * Make the model class a {@link CodecRegistry} for the generated codecs.
+   * Codecs are looked up with a switch on the name of the model class, so
+   * they are only loaded when used.
+   *
+   * @param modelBuilder the model class builder
+   */
+  public void addRegistry(TypeSpec.Builder modelBuilder) {
+    TypeName codecType = ParameterizedTypeName.get(ClassName.get(ObjectCodec.class),
+        WildcardTypeName.subtypeOf(Object.class));
+
+    SortedMap<String, CodeBlock> codecs = new TreeMap<>();
+    for (ModelClass modelClass : classes.values()) {
+      codecs.put(ModelInfoGenerator.getBinaryName(modelClass.getClassName()),
+          CodeBlock.of("$T.INSTANCE", getCodecName(modelClass.getClassName())));
+    }
+    String lookup = ModelInfoGenerator.addLookup(modelBuilder, "findCodec", codecType, codecs);
+
+    modelBuilder.addSuperinterface(ClassName.get(CodecRegistry.class))
+        .addMethod(MethodSpec.methodBuilder("getCodec")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(String.class, "className")
+            .returns(codecType)
+            .addStatement("return $N(className)", lookup)
+            .build());
+  }
+
+}
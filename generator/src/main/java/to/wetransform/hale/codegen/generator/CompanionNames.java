@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.squareup.javapoet.ClassName;
+
+/**
+ * Assigns names to classes generated alongside model and group classes, like
+ * converters or readers. The name is the name of the model class with a
+ * suffix, placed in the same package.
+ */
+class CompanionNames {
+
+  private final Map<ClassName, ModelClass> classes;
+
+  private final String suffix;
+
+  private final Map<ClassName, ClassName> names = new HashMap<>();
+
+  /**
+   * Create a name registry for companion classes.
+   *
+   * @param classes the generated model and group classes
+   * @param suffix the suffix to append to the model class name
+   */
+  public CompanionNames(Map<ClassName, ModelClass> classes, String suffix) {
+    super();
+    this.classes = classes;
+    this.suffix = suffix;
+  }
+
+  /**
+   * Get the name of the companion class for a model or group class.
+   *
+   * @param className the name of the model or group class
+   * @return the name of the companion class
+   */
+  public ClassName get(ClassName className) {
+    ClassName name = names.get(className);
+    if (name == null) {
+      String simpleName = className.simpleName() + suffix;
+      while (classes.containsKey(ClassName.get(className.packageName(), simpleName))) {
+        // avoid collision with a model class
+        simpleName = className.simpleName() + "_" + simpleName.substring(className.simpleName().length());
+      }
+      name = ClassName.get(className.packageName(), simpleName);
+      names.put(className, name);
+    }
+    return name;
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import to.wetransform.hale.codegen.model.ModelInfo;
+
+/**
+ * A model that was generated and compiled in memory.
+ */
+public class CompiledModel {
+
+  private final ClassLoader classLoader;
+
+  private final ModelInfo modelInfo;
+
+  /**
+   * Create a compiled model.
+   *
+   * @param classLoader the class loader providing the model classes
+   * @param modelInfo the generated model information
+   */
+  public CompiledModel(ClassLoader classLoader, ModelInfo modelInfo) {
+    super();
+    this.classLoader = classLoader;
+    this.modelInfo = modelInfo;
+  }
+
+  /**
+   * @return the class loader providing the model classes
+   */
+  public ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /**
+   * @return the generated model information, which also is a converter
+   *   registry if converters were generated
+   */
+  public ModelInfo getModelInfo() {
+    return modelInfo;
+  }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import eu.esdihumboldt.hale.common.instance.model.Group;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.MutableGroup;
+import eu.esdihumboldt.hale.common.instance.model.MutableInstance;
+import to.wetransform.hale.codegen.instances.ConverterRegistry;
+import to.wetransform.hale.codegen.instances.InstanceConverter;
+import to.wetransform.hale.codegen.instances.ModelConverter;
+
+/**
+ * Generates a {@link ModelConverter} for each generated model and group
+ * class, so conversion is done with plain getter and setter calls instead of
+ * reflection.
+ */
+class ConverterGenerator {
+
+  private final Map<ClassName, ModelClass> classes;
+
+  private final CompanionNames converterNames;
+
+  /**
+   * Create a converter generator.
+   *
+   * @param classes the generated model and group classes
+   */
+  public ConverterGenerator(Map<ClassName, ModelClass> classes) {
+    super();
+    this.classes = classes;
+    this.converterNames = new CompanionNames(classes, "Converter");
+  }
+
+  /**
+   * Get the name of the converter class for a model or group class.
+   *
+   * @param className the name of the model or group class
+   * @return the name of the converter class
+   */
+  public ClassName getConverterName(ClassName className) {
+    return converterNames.get(className);
+  }
+
+  /**
+   * Create the converter class for a model or group class.
+   *
+   * @param modelClass the model or group class
+   * @return the Java file of the converter class
+   */
+  public JavaFile createConverter(ModelClass modelClass) {
+    ClassName className = modelClass.getClassName();
+    ClassName converterName = getConverterName(className);
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(converterName)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ParameterizedTypeName.get(ClassName.get(ModelConverter.class), className));
+
+    builder.addField(FieldSpec.builder(converterName, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer("new $T()", converterName)
+        .build());
+
+    builder.addMethod(MethodSpec.methodBuilder("newObject")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(className)
+        .addStatement("return new $T()", className)
+        .build());
+
+    builder.addMethod(createReadMethod(modelClass));
+    builder.addMethod(createWriteMethod(modelClass));
+
+    return JavaFile.builder(converterName.packageName(), builder.build()).build();
+  }
+
+  private MethodSpec createReadMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("read")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(Group.class, "source")
+        .addParameter(modelClass.getClassName(), "target")
+        .addParameter(InstanceConverter.class, "converter")
+        .addException(InstantiationException.class)
+        .addException(IllegalAccessException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.INSTANCE.read(source, target, converter)",
+          getConverterName(modelClass.getSuperclass()));
+    }
+
+    boolean valuesDeclared = false;
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.getKind() == ModelProperty.Kind.VALUE) {
+        method.beginControlFlow("if (source instanceof $T)", Instance.class)
+            .addStatement("target.$L(($T) converter.intern(null, (($T) source).getValue()))",
+                property.getSetterName(), property.getType(), Instance.class)
+            .endControlFlow();
+        continue;
+      }
+
+      if (!valuesDeclared) {
+        method.addStatement("$T[] values", Object.class);
+        valuesDeclared = true;
+      }
+
+      method.addStatement("values = source.getProperty($T.$L)", modelClass.getClassName(),
+          property.getNameConstant());
+      method.beginControlFlow("if (values != null)");
+      method.beginControlFlow("for ($T value : values)", Object.class);
+
+      String valueFormat;
+      Object[] valueArgs;
+      if (property.getKind() == ModelProperty.Kind.SIMPLE) {
+        valueFormat = "($T) converter.intern($T.$L, value)";
+        valueArgs = new Object[] { property.getType(), modelClass.getClassName(), property.getNameConstant() };
+      }
+      else {
+        valueFormat = "(value instanceof $T) ? converter.read(($T) value, $T.class) : ($T) value";
+        valueArgs = new Object[] { Group.class, Group.class, property.getType(), property.getType() };
+      }
+
+      if (property.isMultiple()) {
+        method.addStatement("target.$L().add(" + valueFormat + ")",
+            concat(property.getGetterName(), valueArgs));
+      }
+      else {
+        method.addStatement("target.$L(" + valueFormat + ")",
+            concat(property.getSetterName(), valueArgs));
+      }
+
+      method.endControlFlow();
+      method.endControlFlow();
+    }
+
+    return method.build();
+  }
+
+  private MethodSpec createWriteMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("write")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(modelClass.getClassName(), "source")
+        .addParameter(MutableGroup.class, "target")
+        .addParameter(InstanceConverter.class, "converter")
+        .addException(IllegalAccessException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.INSTANCE.write(source, target, converter)",
+          getConverterName(modelClass.getSuperclass()));
+    }
+
+    for (ModelProperty property : modelClass.getProperties()) {
+      String getter = property.getGetterName();
+
+      method.beginControlFlow("if (source.$L() != null)", getter);
+
+      if (property.getKind() == ModelProperty.Kind.VALUE) {
+        method.beginControlFlow("if (!(target instanceof $T))", MutableInstance.class)
+            .addStatement("throw new $T($S)", IllegalStateException.class,
+                "Value field needs a mutable instance object to populate")
+            .endControlFlow()
+            .addStatement("(($T) target).setValue(source.$L())", MutableInstance.class, getter);
+      }
+      else {
+        String addFormat;
+        if (property.getKind() == ModelProperty.Kind.SIMPLE) {
+          addFormat = "target.addProperty($T.$L, $L)";
+        }
+        else {
+          addFormat = "converter.addProperty(target, $T.$L, $L)";
+        }
+
+        ClassName className = modelClass.getClassName();
+        if (property.isMultiple()) {
+          method.beginControlFlow("for ($T value : source.$L())", property.getType(), getter)
+              .addStatement(addFormat, className, property.getNameConstant(), "value")
+              .endControlFlow();
+        }
+        else {
+          method.addStatement(addFormat, className, property.getNameConstant(), "source." + getter + "()");
+        }
+      }
+
+      method.endControlFlow();
+    }
+
+    return method.build();
+  }
+
+  /**
+   * Make the model class a {@link ConverterRegistry} for the generated
+   * converters. Converters are looked up with a switch on the name of the
+   * model class, so they are only loaded when used.
+   *
+   * @param modelBuilder the model class builder
+   */
+  public void addRegistry(TypeSpec.Builder modelBuilder) {
+    TypeName converterType = ParameterizedTypeName.get(ClassName.get(ModelConverter.class),
+        WildcardTypeName.subtypeOf(Object.class));
+
+    SortedMap<String, CodeBlock> converters = new TreeMap<>();
+    for (ModelClass modelClass : classes.values()) {
+      converters.put(ModelInfoGenerator.getBinaryName(modelClass.getClassName()),
+          CodeBlock.of("$T.INSTANCE", getConverterName(modelClass.getClassName())));
+    }
+    String lookup = ModelInfoGenerator.addLookup(modelBuilder, "getConverter", converterType, converters);
+
+    TypeVariableName typeVariable = TypeVariableName.get("T");
+    TypeName returnType = ParameterizedTypeName.get(ClassName.get(ModelConverter.class), typeVariable);
+    MethodSpec getConverterMethod = MethodSpec.methodBuilder("getConverter")
+        .addAnnotation(Override.class)
+        .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+        .addModifiers(Modifier.PUBLIC)
+        .addTypeVariable(typeVariable)
+        .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVariable), "modelClass")
+        .returns(returnType)
+        .addStatement("return ($T) $N(modelClass.getName())", returnType, lookup)
+        .build();
+
+    modelBuilder.addSuperinterface(ClassName.get(ConverterRegistry.class))
+        .addMethod(getConverterMethod);
+  }
+
+  private static Object[] concat(Object first, Object[] rest) {
+    Object[] result = new Object[rest.length + 1];
+    result[0] = first;
+    System.arraycopy(rest, 0, result, 1, rest.length);
+    return result;
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.squareup.javapoet.JavaFile;
+
+/**
+ * A rendered Java file.
+ */
+class GeneratedFile {
+
+  private final String path;
+
+  private final String className;
+
+  private final byte[] content;
+
+  /**
+   * Create a generated file.
+   *
+   * @param path the path relative to the target folder, using
+   *   <code>/</code> as separator
+   * @param className the qualified name of the class in the file
+   * @param content the file content
+   */
+  public GeneratedFile(String path, String className, byte[] content) {
+    super();
+    this.path = path;
+    this.className = className;
+    this.content = content;
+  }
+
+  /**
+   * Render a Java file.
+   *
+   * @param file the Java file
+   * @return the rendered file
+   */
+  public static GeneratedFile render(JavaFile file) {
+    StringBuilder path = new StringBuilder();
+    String className = file.typeSpec.name;
+    if (!file.packageName.isEmpty()) {
+      path.append(file.packageName.replace('.', '/')).append('/');
+      className = file.packageName + "." + className;
+    }
+    path.append(file.typeSpec.name).append(".java");
+
+    return new GeneratedFile(path.toString(), className,
+        file.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Write the file to a target folder.
+   *
+   * @param targetFolder the target folder
+   * @throws IOException if writing the file fails
+   */
+  public void writeTo(Path targetFolder) throws IOException {
+    Path target = targetFolder.resolve(path);
+    Files.createDirectories(target.getParent());
+    Files.write(target, content);
+  }
+
+  /**
+   * @return the path relative to the target folder, using <code>/</code> as
+   *   separator
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return the qualified name of the class in the file
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * @return the file content
+   */
+  public byte[] getContent() {
+    return content;
+  }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Collects timings and statistics of a model generation, for finding out
+ * where generation time is spent. The profile can be written as JSON report.
+ *
+ * Recording is synchronized, so a profile may be shared by generations
+ * running concurrently, in which case it holds the combined values.
+ */
+public class GenerationProfile {
+
+  /**
+   * Phase for loading the schema.
+   */
+  public static final String PHASE_SCHEMA_LOADING = "schemaLoading";
+
+  /**
+   * Phase for building the model classes from the type definitions.
+   */
+  public static final String PHASE_CLASSES = "classes";
+
+  /**
+   * Phase for building the converters and the model information class.
+   */
+  public static final String PHASE_MODEL = "model";
+
+  /**
+   * Phase for rendering the Java files.
+   */
+  public static final String PHASE_RENDERING = "rendering";
+
+  /**
+   * Phase for writing the Java files.
+   */
+  public static final String PHASE_WRITING = "writing";
+
+  /**
+   * Number of classes listed as largest classes.
+   */
+  private static final int LARGEST_CLASSES = 20;
+
+  private static class Phase {
+
+    private long nanos;
+    private int count;
+
+  }
+
+  private static class ClassInfo {
+
+    private final String className;
+    private final boolean group;
+    private final int fields;
+
+    public ClassInfo(String className, boolean group, int fields) {
+      super();
+      this.className = className;
+      this.group = group;
+      this.fields = fields;
+    }
+
+  }
+
+  private static class SkippedType {
+
+    private final QName type;
+    private final String context;
+
+    public SkippedType(QName type, String context) {
+      super();
+      this.type = type;
+      this.context = context;
+    }
+
+  }
+
+  private final Map<String, Phase> phases = new LinkedHashMap<>();
+  private final List<ClassInfo> classes = new ArrayList<>();
+  private final List<SkippedType> skippedTypes = new ArrayList<>();
+  private int typeClasses;
+  private int groupClasses;
+  private int files;
+  private int filesWritten;
+  private long bytesRendered;
+  private long bytesWritten;
+  private int schemaCacheHits;
+  private int schemaCacheMisses;
+
+  /**
+   * Record the duration of a generation phase.
+   *
+   * @param phase the phase name
+   * @param nanos the duration in nanoseconds
+   */
+  public synchronized void recordPhase(String phase, long nanos) {
+    Phase entry = phases.computeIfAbsent(phase, p -> new Phase());
+    entry.nanos += nanos;
+    entry.count++;
+  }
+
+  /**
+   * Record a generated model or group class.
+   *
+   * @param className the qualified class name
+   * @param group if the class represents a group
+   * @param fields the number of fields holding property values
+   */
+  public synchronized void recordClass(String className, boolean group, int fields) {
+    if (group) {
+      groupClasses++;
+    }
+    else {
+      typeClasses++;
+    }
+    classes.add(new ClassInfo(className, group, fields));
+  }
+
+  /**
+   * Record a type that was skipped.
+   *
+   * @param type the name of the skipped type
+   * @param context where the type was skipped, e.g. a referencing type or
+   *   property
+   */
+  public synchronized void recordSkippedType(QName type, String context) {
+    skippedTypes.add(new SkippedType(type, context));
+  }
+
+  /**
+   * Record rendered files.
+   *
+   * @param count the number of files
+   * @param bytes the size of the files in bytes
+   */
+  public synchronized void recordRendered(int count, long bytes) {
+    files += count;
+    bytesRendered += bytes;
+  }
+
+  /**
+   * Record written files.
+   *
+   * @param count the number of files written
+   * @param bytes the number of bytes written
+   */
+  public synchronized void recordWritten(int count, long bytes) {
+    filesWritten += count;
+    bytesWritten += bytes;
+  }
+
+  /**
+   * Record a lookup in the schema cache.
+   *
+   * @param hit if the schema model was loaded from the cache
+   */
+  public synchronized void recordSchemaCache(boolean hit) {
+    if (hit) {
+      schemaCacheHits++;
+    }
+    else {
+      schemaCacheMisses++;
+    }
+  }
+
+  /**
+   * Get the total duration recorded for a phase.
+   *
+   * @param phase the phase name
+   * @return the duration in nanoseconds
+   */
+  public synchronized long getPhaseNanos(String phase) {
+    Phase entry = phases.get(phase);
+    return (entry == null) ? (0) : (entry.nanos);
+  }
+
+  /**
+   * @return the number of generated model classes for types
+   */
+  public synchronized int getTypeClassCount() {
+    return typeClasses;
+  }
+
+  /**
+   * @return the number of generated group classes
+   */
+  public synchronized int getGroupClassCount() {
+    return groupClasses;
+  }
+
+  /**
+   * @return the number of bytes written
+   */
+  public synchronized long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * @return the number of schemas loaded from the schema cache
+   */
+  public synchronized int getSchemaCacheHits() {
+    return schemaCacheHits;
+  }
+
+  /**
+   * @return the number of schemas that were not found in the schema cache
+   */
+  public synchronized int getSchemaCacheMisses() {
+    return schemaCacheMisses;
+  }
+
+  /**
+   * Create the JSON report for the profile.
+   *
+   * @return the JSON report
+   */
+  public synchronized String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+
+    json.append("  \"phases\": {");
+    boolean first = true;
+    for (Map.Entry<String, Phase> phase : phases.entrySet()) {
+      json.append((first) ? ("\n") : (",\n"));
+      first = false;
+      json.append("    ").append(quote(phase.getKey())).append(": { \"millis\": ")
+          .append(String.format(Locale.ROOT, "%.3f", phase.getValue().nanos / 1e6))
+          .append(", \"count\": ").append(phase.getValue().count).append(" }");
+    }
+    json.append((first) ? ("},\n") : ("\n  },\n"));
+
+    json.append("  \"typeClasses\": ").append(typeClasses).append(",\n");
+    json.append("  \"groupClasses\": ").append(groupClasses).append(",\n");
+    json.append("  \"files\": ").append(files).append(",\n");
+    json.append("  \"bytesRendered\": ").append(bytesRendered).append(",\n");
+    json.append("  \"filesWritten\": ").append(filesWritten).append(",\n");
+    json.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+    json.append("  \"schemaCacheHits\": ").append(schemaCacheHits).append(",\n");
+    json.append("  \"schemaCacheMisses\": ").append(schemaCacheMisses).append(",\n");
+
+    json.append("  \"skippedTypes\": [");
+    first = true;
+    for (SkippedType skipped : skippedTypes) {
+      json.append((first) ? ("\n") : (",\n"));
+      first = false;
+      json.append("    { \"type\": ").append(quote(skipped.type.toString()))
+          .append(", \"context\": ").append(quote(skipped.context)).append(" }");
+    }
+    json.append((first) ? ("],\n") : ("\n  ],\n"));
+
+    List<ClassInfo> largest = new ArrayList<>(classes);
+    largest.sort(Comparator.comparingInt((ClassInfo c) -> c.fields).reversed()
+        .thenComparing(c -> c.className));
+    json.append("  \"largestClasses\": [");
+    first = true;
+    for (ClassInfo info : largest.subList(0, Math.min(LARGEST_CLASSES, largest.size()))) {
+      json.append((first) ? ("\n") : (",\n"));
+      first = false;
+      json.append("    { \"class\": ").append(quote(info.className))
+          .append(", \"group\": ").append(info.group)
+          .append(", \"fields\": ").append(info.fields).append(" }");
+    }
+    json.append((first) ? ("]\n") : ("\n  ]\n"));
+
+    json.append("}\n");
+    return json.toString();
+  }
+
+  /**
+   * Write the JSON report to a file.
+   *
+   * @param file the file to write to
+   * @throws IOException if writing the file fails
+   */
+  public void writeJson(File file) throws IOException {
+    Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String quote(String value) {
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':
+        result.append("\\\"");
+        break;
+      case '\\':
+        result.append("\\\\");
+        break;
+      case '\n':
+        result.append("\\n");
+        break;
+      case '\r':
+        result.append("\\r");
+        break;
+      case '\t':
+        result.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          result.append(String.format("\\u%04x", (int) c));
+        }
+        else {
+          result.append(c);
+        }
+      }
+    }
+    return result.append('"').toString();
+  }
+
+}
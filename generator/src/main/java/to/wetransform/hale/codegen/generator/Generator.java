@@ -18,14 +18,21 @@ package to.wetransform.hale.codegen.generator;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -44,7 +51,6 @@ import com.squareup.javapoet.NameAllocator;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
-import com.squareup.javapoet.WildcardTypeName;
 
 import eu.esdihumboldt.hale.common.schema.geometry.GeometryProperty;
 import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
@@ -54,9 +60,13 @@ import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
 import eu.esdihumboldt.hale.common.schema.model.constraint.property.ChoiceFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.NillableFlag;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.AugmentedValueFlag;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.HasValueFlag;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlAttributeFlag;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
+import eu.esdihumboldt.hale.io.xsd.model.XmlElement;
 import to.wetransform.hale.codegen.model.Choice;
 import to.wetransform.hale.codegen.model.Group;
 import to.wetransform.hale.codegen.model.ModelInfo;
@@ -65,15 +75,72 @@ import to.wetransform.hale.codegen.model.Multiple;
 import to.wetransform.hale.codegen.model.Named;
 import to.wetransform.hale.codegen.model.Property;
 import to.wetransform.hale.codegen.model.Value;
+import to.wetransform.hale.codegen.model.primitive.DoubleList;
+import to.wetransform.hale.codegen.model.primitive.FloatList;
+import to.wetransform.hale.codegen.model.primitive.IntList;
+import to.wetransform.hale.codegen.model.primitive.LongList;
 
 public class Generator {
 
   private static final Logger log = LoggerFactory.getLogger(Generator.class);
 
+  /**
+   * Name of the constant holding the type name in generated model classes.
+   */
+  static final String TYPE_NAME_CONSTANT = "TYPE_NAME";
+
+  /**
+   * Simple name of the generated model class.
+   */
+  static final String MODEL_CLASS_NAME = "Model";
+
+  /**
+   * Simple name of the generated reader for model objects from XML.
+   */
+  static final String MODEL_READER_CLASS_NAME = "ModelReader";
+
+  /**
+   * Simple name of the generated writer for model objects to XML.
+   */
+  static final String MODEL_WRITER_CLASS_NAME = "ModelWriter";
+
+  /**
+   * Primitive field types for boxed simple property types.
+   */
+  private static final Map<TypeName, TypeName> primitiveTypes = new HashMap<>();
+  static {
+    primitiveTypes.put(ClassName.get(Boolean.class), TypeName.BOOLEAN);
+    primitiveTypes.put(ClassName.get(Byte.class), TypeName.BYTE);
+    primitiveTypes.put(ClassName.get(Short.class), TypeName.SHORT);
+    primitiveTypes.put(ClassName.get(Integer.class), TypeName.INT);
+    primitiveTypes.put(ClassName.get(Long.class), TypeName.LONG);
+    primitiveTypes.put(ClassName.get(Float.class), TypeName.FLOAT);
+    primitiveTypes.put(ClassName.get(Double.class), TypeName.DOUBLE);
+  }
+
+  /**
+   * Lists backed by primitive arrays for boxed simple property types.
+   */
+  private static final Map<TypeName, ClassName> primitiveLists = new HashMap<>();
+  static {
+    primitiveLists.put(ClassName.get(Integer.class), ClassName.get(IntList.class));
+    primitiveLists.put(ClassName.get(Long.class), ClassName.get(LongList.class));
+    primitiveLists.put(ClassName.get(Float.class), ClassName.get(FloatList.class));
+    primitiveLists.put(ClassName.get(Double.class), ClassName.get(DoubleList.class));
+  }
+
   private final Map<QName, ClassName> typeClasses = new HashMap<>();
   private final Map<QName, ClassName> groupClasses = new HashMap<>();
+  private final Map<ClassName, ModelClass> modelClasses = new LinkedHashMap<>();
   private final String packagePrefix = ""; //TODO configurable
-  private File targetFolder;
+  private final List<JavaFile> files = new ArrayList<>();
+
+  /**
+   * Classes scheduled for creation. Classes referenced while creating a
+   * class are scheduled instead of being created recursively, so the depth
+   * of the type hierarchy is not limited by the stack size.
+   */
+  private final Deque<Runnable> pending = new ArrayDeque<>();
 
   private final Map<String, String> namespacePrefixes;
 
@@ -81,9 +148,16 @@ public class Generator {
 
   private final Set<String> skipTypes = new HashSet<>();
 
+  private final GeneratorOptions options;
+
   public Generator(Map<String, String> namespacePrefixes, String mainNamespace) {
+    this(namespacePrefixes, mainNamespace, new GeneratorOptions());
+  }
+
+  public Generator(Map<String, String> namespacePrefixes, String mainNamespace, GeneratorOptions options) {
     this.namespacePrefixes = namespacePrefixes;
     this.mainNamespace = mainNamespace;
+    this.options = options;
 
     //FIXME temporary fix for PoC
     skipTypes.add("TimePeriodType");
@@ -105,83 +179,256 @@ public class Generator {
    * @throws IOException
    */
   public void generateModel(Collection<? extends TypeDefinition> types, File targetFolder) throws IOException {
-    this.targetFolder = targetFolder;
+    writeFiles(createFiles(types), targetFolder);
+  }
 
-    for (TypeDefinition type : types) {
+  /**
+   * Generate model classes for the given type definitions and compile them
+   * in memory, without writing any files. Requires running on a JDK.
+   *
+   * @param types the types to generate model classes for
+   * @param parent the parent class loader for the model classes, it must
+   *   provide the model, instances and hale classes the model depends on
+   * @return the compiled model
+   * @throws IOException if setting up the compilation fails
+   */
+  public CompiledModel compileModel(Collection<? extends TypeDefinition> types, ClassLoader parent)
+      throws IOException {
+    ClassLoader classLoader = ModelCompiler.compile(createFiles(types), parent);
+
+    ModelInfo modelInfo;
+    try {
+      modelInfo = classLoader.loadClass(ClassName.get(packagePrefix, MODEL_CLASS_NAME).toString())
+          .asSubclass(ModelInfo.class).newInstance();
+    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Failed to create compiled model", e);
+    }
+
+    return new CompiledModel(classLoader, modelInfo);
+  }
+
+  /**
+   * Create the Java files for the model classes of the given type definitions
+   * and all additional classes.
+   *
+   * @param types the types to generate model classes for
+   * @return the Java files
+   */
+  private List<JavaFile> createFiles(Collection<? extends TypeDefinition> types) {
+    GenerationProfile profile = options.getProfile();
+    long start = System.nanoTime();
+
+    // sorted for a deterministic order of generation
+    List<TypeDefinition> sortedTypes = new ArrayList<>(types);
+    sortedTypes.sort(Comparator.comparing(type -> type.getName().toString()));
+
+    for (TypeDefinition type : sortedTypes) {
       //FIXME handling problematic cases in PoC
       if (skipTypes.contains(type.getName().getLocalPart())) {
         // skip creating property
         log.warn("Skipped creating blacklisted type " + type.getName());
+        if (profile != null) {
+          profile.recordSkippedType(type.getName(), "type");
+        }
         continue;
       }
 
       getOrCreateClass(type);
     }
 
-    // generate model class with information on all created types
-    FieldSpec classesField = FieldSpec.builder(ParameterizedTypeName.get(
-        ClassName.get(Map.class), ClassName.get(QName.class),
-        ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(ModelObject.class))), "modelClasses", Modifier.PRIVATE, Modifier.FINAL)
-        .build();
+    // create scheduled classes, which may schedule further classes
+    while (!pending.isEmpty()) {
+      pending.poll().run();
+    }
 
-    MethodSpec getClassMethod = MethodSpec.methodBuilder("getModelClass")
-        .addModifiers(Modifier.PUBLIC)
-        .addParameter(QName.class, "name")
-        .returns(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(ModelObject.class)))
-        .addStatement("return this.$N.get(name)", classesField)
-        .build();
+    if (profile != null) {
+      profile.recordPhase(GenerationProfile.PHASE_CLASSES, System.nanoTime() - start);
+      for (ModelClass modelClass : modelClasses.values()) {
+        profile.recordClass(modelClass.getClassName().toString(), modelClass.isGroup(),
+            modelClass.getProperties().size());
+      }
+      start = System.nanoTime();
+    }
 
-    MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder();
-    constructorBuilder.addStatement("this.$N = new $T<>()", classesField, HashMap.class);
-    constructorBuilder.addModifiers(Modifier.PUBLIC);
-    for (Entry<QName, ClassName> entry : typeClasses.entrySet()) {
-      constructorBuilder.addStatement("this.$N.put(new $T($S, $S), $T.class)",
-          classesField, QName.class, entry.getKey().getNamespaceURI(),
-          entry.getKey().getLocalPart(), entry.getValue());
+    ConverterGenerator converterGenerator = null;
+    if (options.isGenerateConverters()) {
+      // generate converters for all model and group classes
+      converterGenerator = new ConverterGenerator(modelClasses);
+      for (ModelClass modelClass : modelClasses.values()) {
+        files.add(converterGenerator.createConverter(modelClass));
+      }
     }
 
-    ClassName modelClassName = ClassName.get(packagePrefix, "Model");
+    CodecGenerator codecGenerator = null;
+    if (options.isGenerateCodecs()) {
+      // generate binary codecs for all model and group classes
+      codecGenerator = new CodecGenerator(modelClasses);
+      for (ModelClass modelClass : modelClasses.values()) {
+        files.add(codecGenerator.createCodec(modelClass));
+      }
+    }
+
+    // generate model class with information on all created types
+    ClassName modelClassName = ClassName.get(packagePrefix, MODEL_CLASS_NAME);
     //XXX class name may not be model due to this issue in javapoet 1.7:
     // https://github.com/square/javapoet/issues/470
-    TypeSpec modelClass = TypeSpec.classBuilder(modelClassName)
-      .addModifiers(Modifier.PUBLIC)
-      .addSuperinterface(ClassName.get(ModelInfo.class))
-      .addField(classesField)
-      .addMethod(getClassMethod)
-      .addMethod(constructorBuilder.build())
-      .build();
-
-    JavaFile.builder(modelClassName.packageName(), modelClass).build().writeTo(targetFolder);
+    TypeSpec.Builder modelClassBuilder = new ModelInfoGenerator(typeClasses).createModel(modelClassName);
+
+    if (converterGenerator != null) {
+      // model acts as registry for the generated converters
+      converterGenerator.addRegistry(modelClassBuilder);
+    }
+    if (codecGenerator != null) {
+      // model acts as registry for the generated codecs
+      codecGenerator.addRegistry(modelClassBuilder);
+    }
+
+    TypeSpec modelClass = modelClassBuilder.build();
+
+    files.add(JavaFile.builder(modelClassName.packageName(), modelClass).build());
+
+    if (options.isGenerateXmlReader()) {
+      // generate readers for all model and group classes
+      ReaderGenerator readerGenerator = new ReaderGenerator(modelClasses);
+      for (ModelClass readerClass : modelClasses.values()) {
+        files.add(readerGenerator.createReader(readerClass));
+      }
+      files.add(readerGenerator.createModelReader(ClassName.get(packagePrefix, MODEL_READER_CLASS_NAME)));
+    }
+
+    if (options.isGenerateXmlWriter()) {
+      // generate writers for all model and group classes
+      WriterGenerator writerGenerator = new WriterGenerator(modelClasses);
+      for (ModelClass writerClass : modelClasses.values()) {
+        files.add(writerGenerator.createWriter(writerClass));
+      }
+      files.add(writerGenerator.createModelWriter(ClassName.get(packagePrefix, MODEL_WRITER_CLASS_NAME),
+          namespacePrefixes));
+    }
+
+    if (profile != null) {
+      profile.recordPhase(GenerationProfile.PHASE_MODEL, System.nanoTime() - start);
+    }
+
+    return files;
   }
 
-  private ClassName getOrCreateClass(TypeDefinition type) throws IOException {
+  /**
+   * Write Java files to the target folder. The files are rendered and written
+   * in parallel if configured in the options, which results in the same
+   * output as doing it sequentially. In incremental mode only changed files
+   * are written.
+   *
+   * @param files the Java files to write
+   * @param targetFolder the target folder
+   * @throws IOException if writing a file fails
+   */
+  private void writeFiles(List<JavaFile> files, File targetFolder) throws IOException {
+    GenerationProfile profile = options.getProfile();
+    long start = System.nanoTime();
+
+    List<GeneratedFile> rendered = ((options.isParallel()) ? (files.parallelStream()) : (files.stream()))
+        .map(GeneratedFile::render)
+        .collect(Collectors.toList());
+
+    long bytes = 0;
+    for (GeneratedFile file : rendered) {
+      bytes += file.getContent().length;
+    }
+    if (profile != null) {
+      profile.recordPhase(GenerationProfile.PHASE_RENDERING, System.nanoTime() - start);
+      profile.recordRendered(rendered.size(), bytes);
+      start = System.nanoTime();
+    }
+
+    if (options.isIncremental()) {
+      IncrementalWriter writer = new IncrementalWriter(targetFolder);
+      writer.write(rendered, options.isParallel());
+      if (profile != null) {
+        profile.recordWritten(writer.getWritten(), writer.getBytesWritten());
+      }
+    }
+    else {
+      Path targetPath = targetFolder.toPath();
+      if (options.isParallel()) {
+        try {
+          rendered.parallelStream().forEach(file -> {
+            try {
+              file.writeTo(targetPath);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+      }
+      else {
+        for (GeneratedFile file : rendered) {
+          file.writeTo(targetPath);
+        }
+      }
+      if (profile != null) {
+        profile.recordWritten(rendered.size(), bytes);
+      }
+    }
+
+    if (profile != null) {
+      profile.recordPhase(GenerationProfile.PHASE_WRITING, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Get the name of the model class for a type. If the class was not created
+   * yet, it is scheduled for creation.
+   *
+   * @param type the type definition
+   * @return the name of the model class
+   */
+  private ClassName getOrCreateClass(TypeDefinition type) {
     ClassName className = typeClasses.get(type.getName());
 
     if (className != null) {
-      // class was already generated
+      // class was already generated or is scheduled
       return className;
     }
 
-    // generate class
-    className = newClassName(type.getName());
-    typeClasses.put(type.getName(), className); // being generated
+    // schedule generating the class
+    ClassName newClassName = newClassName(type.getName());
+    typeClasses.put(type.getName(), newClassName);
+    ModelClass modelClass = new ModelClass(newClassName, type.getName());
+    modelClasses.put(newClassName, modelClass);
+    pending.add(() -> createClass(type, newClassName, modelClass));
+
+    return newClassName;
+  }
 
+  private void createClass(TypeDefinition type, ClassName className, ModelClass modelClass) {
     TypeSpec.Builder builder = TypeSpec.classBuilder(className);
     builder.addModifiers(Modifier.PUBLIC);
 
     // add named annotation
     builder.addAnnotation(createNameAnnotation(type.getName()));
+    builder.addField(createNameConstant(TYPE_NAME_CONSTANT, type.getName()));
+
+    // remember the elements declared with the type
+    for (XmlElement element : type.getConstraint(XmlElements.class).getElements()) {
+      modelClass.addElement(element.getName());
+    }
 
     // set super type
     if (type.getSuperType() != null && !isSimpleType(type) &&
         // if the HasValueFlag is removed in the type, don't add the super type
         !(!type.getConstraint(HasValueFlag.class).isEnabled()
-            && type.getSuperType().getConstraint(HasValueFlag.class).isEnabled())) {
-      //TODO check if this kind of recursion can lead to problems (cycles!)
+            && type.getSuperType().getConstraint(HasValueFlag.class).isEnabled())
+        && !breaksSupertypeCycle(type)) {
       //FIXME handling problematic cases in PoC
       if (skipTypes.contains(type.getSuperType().getName().getLocalPart())) {
         // skip super type
         log.warn("Skipped blacklisted supertype " + type.getSuperType().getName() + " for type " + type.getName());
+        if (options.getProfile() != null) {
+          options.getProfile().recordSkippedType(type.getSuperType().getName(), "supertype of " + type.getName());
+        }
 
         // must implement Serializable
         builder.addSuperinterface(ClassName.get(Serializable.class));
@@ -189,7 +436,9 @@ public class Generator {
         builder.addSuperinterface(ClassName.get(ModelObject.class));
       }
       else {
-        builder.superclass(getOrCreateClass(type.getSuperType()));
+        ClassName superClassName = getOrCreateClass(type.getSuperType());
+        builder.superclass(superClassName);
+        modelClass.setSuperclass(superClassName);
       }
     }
     else {
@@ -204,42 +453,52 @@ public class Generator {
       // directly (e.g. subclassing String does not make sense)
       //FIXME magic property name 'value'
       Class<?> bindingClass = type.getConstraint(Binding.class).getBinding();
-      addBeanProperty(builder, "value", ClassName.get(bindingClass), null);
+      addBeanProperty(builder, modelClass, "value", ClassName.get(bindingClass), null);
+      modelClass.addProperty(new ModelProperty("value", null, ModelProperty.Kind.VALUE,
+          ClassName.get(bindingClass), false, false, null));
     }
     else {
       // add properties
-      addProperties(type, builder);
+      addProperties(type, builder, modelClass);
 
       if (type.getConstraint(AugmentedValueFlag.class).isEnabled() &&
           (type.getSuperType() == null || !type.getSuperType().getConstraint(AugmentedValueFlag.class).isEnabled())) {
         //XXX special case: augmented value - also add value field
         //XXX doing this specifically for geometry handling right now, but there are alternatives to this approach
         //FIXME this is a hack - it cannot be generally assumed that augmented values are geometries
-        addBeanProperty(builder, "geometry", ClassName.get(GeometryProperty.class), null);
+        addBeanProperty(builder, modelClass, "geometry", ClassName.get(GeometryProperty.class), null);
+        modelClass.addProperty(new ModelProperty("geometry", null, ModelProperty.Kind.VALUE,
+            ClassName.get(GeometryProperty.class), false, false, null));
       }
     }
 
     TypeSpec typeClass = builder.build();
     JavaFile javaFile = JavaFile.builder(className.packageName(), typeClass).build();
 
-    javaFile.writeTo(targetFolder);
-
-    return className;
+    files.add(javaFile);
   }
 
-  private TypeName getOrCreateGroupType(GroupPropertyDefinition group) throws IOException {
+  private TypeName getOrCreateGroupType(GroupPropertyDefinition group) {
     //XXX is there potential to reuse group types?
     //XXX identifier right choice for index
     ClassName className = groupClasses.get(group.getName());
 
     if (className != null) {
-      // class was already generated
+      // class was already generated or is scheduled
       return className;
     }
 
-    // generate class
-    className = newClassName(group.getName()); //XXX is the name sufficient?
-    groupClasses.put(group.getName(), className); // being generated...
+    // schedule generating the class
+    ClassName newClassName = newClassName(group.getName()); //XXX is the name sufficient?
+    groupClasses.put(group.getName(), newClassName);
+    ModelClass modelClass = new ModelClass(newClassName, null);
+    modelClasses.put(newClassName, modelClass);
+    pending.add(() -> createGroupClass(group, newClassName, modelClass));
+
+    return newClassName;
+  }
+
+  private void createGroupClass(GroupPropertyDefinition group, ClassName className, ModelClass modelClass) {
     TypeSpec.Builder builder = TypeSpec.classBuilder(className);
     builder.addModifiers(Modifier.PUBLIC);
 
@@ -248,16 +507,16 @@ public class Generator {
 //    builder.addAnnotation(createNameAnnotation(group.getName()));
 
     //TODO mark as group or choice?
+    modelClass.setChoice(group.getConstraint(ChoiceFlag.class).isEnabled());
 
     // add properties
     //XXX makes sense for a sequence, but can we provide a better interface for choices?
-    addProperties(group, builder);
+    addProperties(group, builder, modelClass);
 
     TypeSpec typeClass = builder.build();
     JavaFile javaFile = JavaFile.builder(className.packageName(), typeClass).build();
 
-    javaFile.writeTo(targetFolder);
-    return className;
+    files.add(javaFile);
   }
 
   private AnnotationSpec createNameAnnotation(QName name) {
@@ -278,17 +537,32 @@ public class Generator {
     }
   }
 
-  private void addProperties(DefinitionGroup type, TypeSpec.Builder builder) throws IOException {
+  /**
+   * Create a constant holding a qualified name, so the name does not have to
+   * be created from the name annotation when needed.
+   *
+   * @param constantName the name of the constant
+   * @param name the qualified name
+   * @return the constant field
+   */
+  private FieldSpec createNameConstant(String constantName, QName name) {
+    return FieldSpec.builder(QName.class, constantName, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer("new $T($S, $S)", QName.class, name.getNamespaceURI(), name.getLocalPart())
+        .build();
+  }
+
+  private void addProperties(DefinitionGroup type, TypeSpec.Builder builder, ModelClass modelClass) {
     //TODO special handling for restriction types? seems properties are repeatedly declared in subtypes there
     for (ChildDefinition<?> child : type.getDeclaredChildren()) {
-      addProperty(builder, child);
+      addProperty(builder, modelClass, child);
     }
   }
 
-  private void addProperty(TypeSpec.Builder builder, ChildDefinition<?> child) throws IOException {
+  private void addProperty(TypeSpec.Builder builder, ModelClass modelClass, ChildDefinition<?> child) {
     TypeName propertyType;
     String propertyName = getPropertyName(child.getName());
     Cardinality card;
+    ModelProperty.Kind kind;
 
     if (child.asProperty() != null) {
       PropertyDefinition property = child.asProperty();
@@ -297,7 +571,7 @@ public class Generator {
         // simple type -> use binding
         Class<?> bindingClass = property.getPropertyType().getConstraint(Binding.class).getBinding();
         propertyType = ClassName.get(bindingClass);
-
+        kind = ModelProperty.Kind.SIMPLE;
       }
       else {
         // complex type
@@ -306,10 +580,15 @@ public class Generator {
         if (skipTypes.contains(property.getPropertyType().getName().getLocalPart())) {
           // skip creating property
           log.warn("Skipped creating property with blacklisted type, property name is " + propertyName);
+          if (options.getProfile() != null) {
+            options.getProfile().recordSkippedType(property.getPropertyType().getName(),
+                "property " + child.getName());
+          }
           return;
         }
 
         propertyType = getOrCreateClass(property.getPropertyType());
+        kind = ModelProperty.Kind.COMPLEX;
       }
 
       card = property.getConstraint(Cardinality.class);
@@ -328,6 +607,7 @@ public class Generator {
       }
 
       propertyType = getOrCreateGroupType(group);
+      kind = ModelProperty.Kind.GROUP;
 
       card = group.getConstraint(Cardinality.class);
     }
@@ -335,12 +615,58 @@ public class Generator {
       throw new IllegalStateException("Unsupported child definition type");
     }
 
+    String nameConstant = modelClass.newConstantName("PROPERTY_" + toConstantName(propertyName));
+    builder.addField(createNameConstant(nameConstant, child.getName()));
+
     if (card.mayOccurMultipleTimes()) {
       addCollectionProperty(builder, propertyName, propertyType, child);
     }
     else {
-      addBeanProperty(builder, propertyName, propertyType, child);
+      addBeanProperty(builder, modelClass, propertyName, propertyType, child);
+    }
+    boolean attribute = child.asProperty() != null
+        && child.asProperty().getConstraint(XmlAttributeFlag.class).isEnabled();
+    modelClass.addProperty(new ModelProperty(propertyName, child.getName(), kind, propertyType,
+        card.mayOccurMultipleTimes(), attribute, nameConstant));
+  }
+
+  /**
+   * Determines if the super type relation of a type must be omitted because
+   * the type is part of a super type cycle. The cycle is broken at the type
+   * with the lexicographically smallest name, so the result does not depend
+   * on the order in which the types are processed.
+   *
+   * @param type the type definition
+   * @return if the super type must be omitted for the type
+   */
+  private boolean breaksSupertypeCycle(TypeDefinition type) {
+    Set<TypeDefinition> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<TypeDefinition> chain = new ArrayList<>();
+    TypeDefinition current = type.getSuperType();
+    while (current != null && current != type) {
+      if (!visited.add(current)) {
+        // cycle that does not include the type
+        return false;
+      }
+      chain.add(current);
+      current = current.getSuperType();
+    }
+
+    if (current == null) {
+      // no cycle
+      return false;
+    }
+
+    String name = type.getName().toString();
+    for (TypeDefinition member : chain) {
+      if (member.getName().toString().compareTo(name) < 0) {
+        return false;
+      }
     }
+
+    log.warn("Omitted super type " + type.getSuperType().getName() + " of type " + type.getName()
+        + " to break a super type cycle");
+    return true;
   }
 
   private boolean isSimpleType(TypeDefinition propertyType) {
@@ -348,10 +674,16 @@ public class Generator {
         propertyType.getChildren().isEmpty();
   }
 
-  private void addBeanProperty(TypeSpec.Builder builder, String propertyName, TypeName propertyType,
-      ChildDefinition<?> definition) {
+  private void addBeanProperty(TypeSpec.Builder builder, ModelClass modelClass, String propertyName,
+      TypeName propertyType, ChildDefinition<?> definition) {
     QName qualifiedName = (definition == null) ? (null) : (definition.getName());
 
+    TypeName primitiveType = (options.isPrimitiveFields()) ? (primitiveTypes.get(propertyType)) : (null);
+    if (primitiveType != null) {
+      addPrimitiveBeanProperty(builder, modelClass, propertyName, propertyType, primitiveType, definition);
+      return;
+    }
+
     // add the field
     FieldSpec.Builder fieldBuilder = FieldSpec.builder(propertyType, propertyName, Modifier.PRIVATE)
         .addAnnotation(createNameAnnotation(qualifiedName));
@@ -379,6 +711,65 @@ public class Generator {
     builder.addMethod(getter);
   }
 
+  /**
+   * Add a property stored in a primitive field. A bit in a presence bitmask
+   * of the class marks if the field holds a value, getter and setter use the
+   * boxed type with <code>null</code> for no value.
+   */
+  private void addPrimitiveBeanProperty(TypeSpec.Builder builder, ModelClass modelClass, String propertyName,
+      TypeName propertyType, TypeName primitiveType, ChildDefinition<?> definition) {
+    QName qualifiedName = (definition == null) ? (null) : (definition.getName());
+
+    // presence bitmask, one long field per 64 properties
+    //XXX '$' cannot occur in names derived from XML names
+    int bit = modelClass.newPresenceBit();
+    String presenceField = "$present" + (bit / 64);
+    if (bit % 64 == 0) {
+      builder.addField(FieldSpec.builder(TypeName.LONG, presenceField, Modifier.PRIVATE).build());
+    }
+    String mask = String.format("0x%xL", 1L << (bit % 64));
+
+    // add the field
+    FieldSpec.Builder fieldBuilder = FieldSpec.builder(primitiveType, propertyName, Modifier.PRIVATE)
+        .addAnnotation(createNameAnnotation(qualifiedName));
+    if (definition != null) {
+      fieldBuilder.addAnnotation(getPropertyAnnotation(definition));
+    }
+    builder.addField(fieldBuilder.build());
+
+    String capitalized = propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1);
+
+    // add setter
+    MethodSpec setter = MethodSpec.methodBuilder("set" + capitalized)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(propertyType, propertyName, Modifier.FINAL)
+        .beginControlFlow("if ($L == null)", propertyName)
+        .addStatement("this.$L &= ~$L", presenceField, mask)
+        .addStatement("this.$L = $L", propertyName, (primitiveType.equals(TypeName.BOOLEAN)) ? ("false") : ("0"))
+        .nextControlFlow("else")
+        .addStatement("this.$L |= $L", presenceField, mask)
+        .addStatement("this.$L = $L", propertyName, propertyName)
+        .endControlFlow()
+        .build();
+    builder.addMethod(setter);
+
+    // add getter
+    MethodSpec getter = MethodSpec.methodBuilder("get" + capitalized)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(propertyType)
+        .addStatement("return ((this.$L & $L) != 0) ? (this.$L) : (null)", presenceField, mask, propertyName)
+        .build();
+    builder.addMethod(getter);
+
+    // add presence check
+    MethodSpec has = MethodSpec.methodBuilder("has" + capitalized)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(TypeName.BOOLEAN)
+        .addStatement("return (this.$L & $L) != 0", presenceField, mask)
+        .build();
+    builder.addMethod(has);
+  }
+
   private AnnotationSpec getPropertyAnnotation(ChildDefinition<?> definition) {
     Class<?> type = Property.class;
 
@@ -398,12 +789,18 @@ public class Generator {
       ChildDefinition<?> definition) {
     QName qualifiedName = (definition == null) ? (null) : (definition.getName());
 
+    // lists backed by primitive arrays cannot hold nil values
+    boolean nillable = definition != null && definition.asProperty() != null
+        && definition.asProperty().getConstraint(NillableFlag.class).isEnabled();
+    ClassName primitiveList = (options.isPrimitiveFields() && !nillable) ? (primitiveLists.get(propertyType)) : (null);
+
     propertyType = ParameterizedTypeName.get(ClassName.get(List.class), propertyType);
 
     // add the field
     FieldSpec.Builder fieldBuilder = FieldSpec.builder(propertyType, propertyName, Modifier.PRIVATE)
         // initialize with empty collection
-        .initializer("new $T<>()", ClassName.get(ArrayList.class))
+        .initializer((primitiveList != null) ? ("new $T()") : ("new $T<>()"),
+            (primitiveList != null) ? (primitiveList) : (ClassName.get(ArrayList.class)))
         .addAnnotation(Multiple.class)
         .addAnnotation(createNameAnnotation(qualifiedName));
     if (definition != null) {
@@ -459,6 +856,26 @@ public class Generator {
     return baseIdentifier;
   }
 
+  /**
+   * Create a constant name from a property name, e.g. <code>GML_ID</code>
+   * for <code>gmlId</code>.
+   *
+   * @param propertyName the property name
+   * @return the constant name
+   */
+  private static String toConstantName(String propertyName) {
+    StringBuilder result = new StringBuilder();
+    char previous = 0;
+    for (char c : propertyName.toCharArray()) {
+      if (Character.isUpperCase(c) && (Character.isLowerCase(previous) || Character.isDigit(previous))) {
+        result.append('_');
+      }
+      result.append(Character.toUpperCase(c));
+      previous = c;
+    }
+    return result.toString();
+  }
+
   private ClassName newClassName(QName name) {
     // TODO Auto-generated method stub
     String packageName = getPackageName(name.getNamespaceURI());
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.File;
+
+/**
+ * Options for the model generation.
+ */
+public class GeneratorOptions {
+
+  private boolean primitiveFields;
+
+  private boolean generateConverters;
+
+  private boolean generateCodecs;
+
+  private boolean generateXmlReader;
+
+  private boolean generateXmlWriter;
+
+  private boolean parallel;
+
+  private boolean incremental;
+
+  private File schemaCache;
+
+  private GenerationProfile profile;
+
+  /**
+   * @return if primitive fields should be used for numeric and boolean
+   *   simple properties
+   */
+  public boolean isPrimitiveFields() {
+    return primitiveFields;
+  }
+
+  /**
+   * @param primitiveFields if single numeric and boolean simple properties
+   *   should be stored in primitive fields, with a bitmask marking which
+   *   fields hold a value, and repeated numeric properties that are not
+   *   nillable in lists backed by primitive arrays
+   */
+  public void setPrimitiveFields(boolean primitiveFields) {
+    this.primitiveFields = primitiveFields;
+  }
+
+  /**
+   * @return if converters between model objects and instances should be
+   *   generated
+   */
+  public boolean isGenerateConverters() {
+    return generateConverters;
+  }
+
+  /**
+   * @param generateConverters if converters between model objects and
+   *   instances should be generated for each model class, with the
+   *   generated model acting as converter registry
+   */
+  public void setGenerateConverters(boolean generateConverters) {
+    this.generateConverters = generateConverters;
+  }
+
+  /**
+   * @return if binary codecs for model objects should be generated
+   */
+  public boolean isGenerateCodecs() {
+    return generateCodecs;
+  }
+
+  /**
+   * @param generateCodecs if a binary codec should be generated for each
+   *   model and group class, with the generated model acting as codec
+   *   registry
+   */
+  public void setGenerateCodecs(boolean generateCodecs) {
+    this.generateCodecs = generateCodecs;
+  }
+
+  /**
+   * @return if readers for model objects from XML should be generated
+   */
+  public boolean isGenerateXmlReader() {
+    return generateXmlReader;
+  }
+
+  /**
+   * @param generateXmlReader if a StAX based reader should be generated for
+   *   each model class, that reads model objects directly from XML like GML
+   */
+  public void setGenerateXmlReader(boolean generateXmlReader) {
+    this.generateXmlReader = generateXmlReader;
+  }
+
+  /**
+   * @return if writers for model objects to XML should be generated
+   */
+  public boolean isGenerateXmlWriter() {
+    return generateXmlWriter;
+  }
+
+  /**
+   * @param generateXmlWriter if a StAX based writer should be generated for
+   *   each model class, that writes model objects directly as XML like GML
+   */
+  public void setGenerateXmlWriter(boolean generateXmlWriter) {
+    this.generateXmlWriter = generateXmlWriter;
+  }
+
+  /**
+   * @return if generated files should be written in parallel
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  /**
+   * @param parallel if generated files should be rendered and written in
+   *   parallel, after all classes have been built
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * @return if generation should only write changed files
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * @param incremental if generation should only write files whose content
+   *   changed and delete files of classes that are no longer generated, based
+   *   on a manifest kept in the target folder
+   */
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * @return the folder for caching loaded schemas, <code>null</code> if
+   *   schemas are not cached
+   */
+  public File getSchemaCache() {
+    return schemaCache;
+  }
+
+  /**
+   * @param schemaCache the folder for caching loaded schemas, so unchanged
+   *   schemas don't need to be parsed again, <code>null</code> to disable
+   *   caching
+   */
+  public void setSchemaCache(File schemaCache) {
+    this.schemaCache = schemaCache;
+  }
+
+  /**
+   * @return the profile to record generation timings and statistics in,
+   *   <code>null</code> if generation is not profiled
+   */
+  public GenerationProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * @param profile the profile to record generation timings and statistics
+   *   in, <code>null</code> to disable profiling
+   */
+  public void setProfile(GenerationProfile profile) {
+    this.profile = profile;
+  }
+
+}
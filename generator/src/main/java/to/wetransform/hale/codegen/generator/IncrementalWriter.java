@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes generated Java files to a target folder, only rewriting files whose
+ * content changed since the last generation and deleting files of classes
+ * that are no longer generated. The content hash of each generated file is
+ * stored in a manifest in the target folder.
+ *
+ * As the content of a class reflects its type definition and the parts of
+ * its dependencies it refers to, unchanged files keep their modification
+ * time and do not trigger recompilation in downstream builds.
+ */
+class IncrementalWriter {
+
+  private static final Logger log = LoggerFactory.getLogger(IncrementalWriter.class);
+
+  /**
+   * Name of the manifest file in the target folder.
+   */
+  public static final String MANIFEST_NAME = ".hale-codegen-manifest";
+
+  private final Path targetFolder;
+
+  private int written;
+  private int unchanged;
+  private int deleted;
+  private long bytesWritten;
+
+  /**
+   * Create an incremental writer.
+   *
+   * @param targetFolder the target folder
+   */
+  public IncrementalWriter(File targetFolder) {
+    super();
+    this.targetFolder = targetFolder.toPath().toAbsolutePath().normalize();
+  }
+
+  /**
+   * Write the given files, replacing the result of the previous generation.
+   *
+   * @param files the rendered files to write
+   * @param parallel if files should be written in parallel
+   * @throws IOException if reading or writing files fails
+   */
+  public void write(List<GeneratedFile> files, boolean parallel) throws IOException {
+    Map<String, String> previous = readManifest();
+    Map<String, String> current = new ConcurrentHashMap<>();
+    AtomicInteger writtenCount = new AtomicInteger();
+    AtomicLong writtenBytes = new AtomicLong();
+
+    Stream<GeneratedFile> stream = (parallel) ? (files.parallelStream()) : (files.stream());
+    try {
+      stream.forEach(file -> {
+        String hash = hash(file.getContent());
+        current.put(file.getPath(), hash);
+
+        if (!hash.equals(previous.get(file.getPath())) || !Files.exists(targetFolder.resolve(file.getPath()))) {
+          try {
+            file.writeTo(targetFolder);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          writtenCount.incrementAndGet();
+          writtenBytes.addAndGet(file.getContent().length);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    written = writtenCount.get();
+    bytesWritten = writtenBytes.get();
+    unchanged = files.size() - written;
+
+    // delete files of classes that are no longer generated
+    deleted = 0;
+    for (String path : previous.keySet()) {
+      if (!current.containsKey(path)) {
+        Path file = targetFolder.resolve(path).normalize();
+        if (!file.startsWith(targetFolder) || file.equals(targetFolder)) {
+          // never delete anything outside the target folder, e.g. for a tampered manifest
+          log.warn("Skipping deletion of {} outside of the target folder", path);
+          continue;
+        }
+        if (Files.deleteIfExists(file)) {
+          deleted++;
+        }
+        deleteEmptyFolders(file.getParent());
+      }
+    }
+
+    writeManifest(current);
+
+    log.info("Generated files: {} written, {} unchanged, {} deleted", written, unchanged, deleted);
+  }
+
+  /**
+   * @return the number of files written in the last run
+   */
+  public int getWritten() {
+    return written;
+  }
+
+  /**
+   * @return the number of bytes written in the last run
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * @return the number of files left unchanged in the last run
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return the number of files deleted in the last run
+   */
+  public int getDeleted() {
+    return deleted;
+  }
+
+  /**
+   * Read the manifest. Each line holds the hash of a file, a space and the
+   * path of the file relative to the target folder, encoded as UTF-8. Lines
+   * that do not match the format are ignored, so the files they refer to are
+   * written again.
+   */
+  private Map<String, String> readManifest() throws IOException {
+    Map<String, String> result = new TreeMap<>();
+    Path manifest = targetFolder.resolve(MANIFEST_NAME);
+    if (Files.exists(manifest)) {
+      for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+        int separator = line.indexOf(' ');
+        if (separator > 0 && separator < line.length() - 1) {
+          result.put(line.substring(separator + 1), line.substring(0, separator));
+        }
+      }
+    }
+    return result;
+  }
+
+  private void writeManifest(Map<String, String> hashes) throws IOException {
+    // sorted for a stable manifest
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, String> entry : new TreeMap<>(hashes).entrySet()) {
+      lines.add(entry.getValue() + ' ' + entry.getKey());
+    }
+
+    Files.createDirectories(targetFolder);
+    Files.write(targetFolder.resolve(MANIFEST_NAME), lines, StandardCharsets.UTF_8);
+  }
+
+  private void deleteEmptyFolders(Path folder) throws IOException {
+    while (folder != null && !folder.equals(targetFolder) && folder.startsWith(targetFolder)
+        && Files.isDirectory(folder)) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+        if (entries.iterator().hasNext()) {
+          return;
+        }
+      }
+      Files.delete(folder);
+      folder = folder.getParent();
+    }
+  }
+
+  private static String hash(byte[] content) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+    StringBuilder result = new StringBuilder();
+    for (byte b : digest.digest(content)) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+
+}
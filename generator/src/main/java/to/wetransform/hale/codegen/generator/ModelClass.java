@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.NameAllocator;
+
+/**
+ * Information on a generated model or group class, collected during
+ * generation for creating additional classes based on the model.
+ */
+class ModelClass {
+
+  private final ClassName className;
+  private final QName name;
+  private ClassName superclass;
+  private final List<ModelProperty> properties = new ArrayList<>();
+  private final List<QName> elements = new ArrayList<>();
+  private boolean choice;
+  private int presenceBits;
+  private final NameAllocator constantNames = new NameAllocator();
+
+  /**
+   * Create information on a generated class.
+   *
+   * @param className the name of the generated class
+   * @param name the type name, <code>null</code> for a group class
+   */
+  public ModelClass(ClassName className, QName name) {
+    super();
+    this.className = className;
+    this.name = name;
+
+    constantNames.newName(Generator.TYPE_NAME_CONSTANT);
+  }
+
+  /**
+   * @return the name of the generated class
+   */
+  public ClassName getClassName() {
+    return className;
+  }
+
+  /**
+   * @return the type name, <code>null</code> for a group class
+   */
+  public QName getName() {
+    return name;
+  }
+
+  /**
+   * @return if this is a group class
+   */
+  public boolean isGroup() {
+    return name == null;
+  }
+
+  /**
+   * @return the generated super class, <code>null</code> if the class does
+   *   not extend another model class
+   */
+  public ClassName getSuperclass() {
+    return superclass;
+  }
+
+  /**
+   * @param superclass the generated super class
+   */
+  public void setSuperclass(ClassName superclass) {
+    this.superclass = superclass;
+  }
+
+  /**
+   * @return the properties declared in the class
+   */
+  public List<ModelProperty> getProperties() {
+    return Collections.unmodifiableList(properties);
+  }
+
+  /**
+   * @return the names of the XML elements declared with the type
+   */
+  public List<QName> getElements() {
+    return Collections.unmodifiableList(elements);
+  }
+
+  /**
+   * @param element the name of an XML element declared with the type
+   */
+  public void addElement(QName element) {
+    elements.add(element);
+  }
+
+  /**
+   * @return if this is a group class representing a choice
+   */
+  public boolean isChoice() {
+    return choice;
+  }
+
+  /**
+   * @param choice if this is a group class representing a choice
+   */
+  public void setChoice(boolean choice) {
+    this.choice = choice;
+  }
+
+  /**
+   * Allocate a bit in the presence bitmask of the class, used to mark if a
+   * primitive field holds a value.
+   *
+   * @return the index of the bit, starting with <code>0</code>
+   */
+  public int newPresenceBit() {
+    return presenceBits++;
+  }
+
+  /**
+   * Determine if the class has properties represented by XML attributes,
+   * including the properties of nested group classes.
+   *
+   * @param classes the generated model and group classes
+   * @return if the class has attribute properties
+   */
+  public boolean hasAttributes(Map<ClassName, ModelClass> classes) {
+    Set<ModelClass> visited = new HashSet<>();
+    Deque<ModelClass> pending = new ArrayDeque<>();
+    pending.add(this);
+    while (!pending.isEmpty()) {
+      ModelClass current = pending.poll();
+      if (!visited.add(current)) {
+        continue;
+      }
+      for (ModelProperty property : current.getProperties()) {
+        if (property.isAttribute()) {
+          return true;
+        }
+        if (property.getKind() == ModelProperty.Kind.GROUP) {
+          pending.add(classes.get(property.getType()));
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Allocate a name for a static constant in the class.
+   *
+   * @param suggestion the suggested name
+   * @return the suggested name or a variation of it that is unique in the
+   *   class
+   */
+  public String newConstantName(String suggestion) {
+    return constantNames.newName(suggestion);
+  }
+
+  /**
+   * @param property the property to add
+   */
+  public void addProperty(ModelProperty property) {
+    properties.add(property);
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.squareup.javapoet.JavaFile;
+
+/**
+ * Compiles generated Java files in memory with the compiler of the running
+ * JDK, without writing sources or class files to disk.
+ */
+class ModelCompiler {
+
+  private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+  /**
+   * Class loader for classes compiled in memory.
+   */
+  private static class MemoryClassLoader extends ClassLoader {
+
+    static {
+      registerAsParallelCapable();
+    }
+
+    private final Map<String, byte[]> classes;
+
+    public MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+      super(parent);
+      this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+
+  }
+
+  /**
+   * Class file held in memory.
+   */
+  private static class MemoryClassFile extends SimpleJavaFileObject {
+
+    private final String className;
+
+    private final Map<String, byte[]> classes;
+
+    public MemoryClassFile(String className, Map<String, byte[]> classes) {
+      super(URI.create("memory:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+      this.className = className;
+      this.classes = classes;
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return new ByteArrayOutputStream() {
+
+        @Override
+        public void close() throws IOException {
+          super.close();
+          classes.put(className, toByteArray());
+        }
+
+      };
+    }
+
+  }
+
+  /**
+   * Compile the given files.
+   *
+   * @param files the Java files to compile
+   * @param parent the parent class loader, it must provide the classes the
+   *   generated code depends on
+   * @return the class loader providing the compiled classes
+   * @throws IOException if setting up the compilation fails
+   * @throws IllegalStateException if no compiler is available or the
+   *   compilation fails
+   */
+  public static ClassLoader compile(List<JavaFile> files, ClassLoader parent) throws IOException {
+    if (compiler == null) {
+      throw new IllegalStateException("No Java compiler available, a JDK is required for in-memory compilation");
+    }
+
+    List<JavaFileObject> sources = new ArrayList<>(files.size());
+    for (JavaFile file : files) {
+      sources.add(file.toJavaFileObject());
+    }
+
+    Map<String, byte[]> classes = new ConcurrentHashMap<>();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager standardManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+      standardManager.setLocation(StandardLocation.CLASS_PATH, getClassPath(parent));
+
+      ForwardingJavaFileManager<StandardJavaFileManager> fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(
+          standardManager) {
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind,
+            FileObject sibling) throws IOException {
+          if (kind == Kind.CLASS) {
+            return new MemoryClassFile(className, classes);
+          }
+          return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+
+      };
+
+      // annotation processing is not needed for generated code
+      List<String> options = Arrays.asList("-proc:none", "-nowarn");
+      boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, sources).call();
+      if (!success) {
+        StringBuilder message = new StringBuilder("Compiling the generated model failed:");
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+          if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            message.append('\n').append(diagnostic);
+          }
+        }
+        throw new IllegalStateException(message.toString());
+      }
+    }
+
+    return new MemoryClassLoader(classes, parent);
+  }
+
+  /**
+   * Determine the class path for the compilation from the class path of the
+   * application and the locations of the given class loader and its parents,
+   * where available.
+   *
+   * @param classLoader the class loader
+   * @return the class path entries
+   */
+  private static List<File> getClassPath(ClassLoader classLoader) {
+    Set<File> classPath = new LinkedHashSet<>();
+    for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+      if (loader instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) loader).getURLs()) {
+          if ("file".equals(url.getProtocol())) {
+            try {
+              classPath.add(new File(url.toURI()));
+            } catch (URISyntaxException | IllegalArgumentException e) {
+              // ignore entries that cannot be used
+            }
+          }
+        }
+      }
+    }
+    for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+      if (!entry.isEmpty()) {
+        classPath.add(new File(entry));
+      }
+    }
+    return new ArrayList<>(classPath);
+  }
+
+}
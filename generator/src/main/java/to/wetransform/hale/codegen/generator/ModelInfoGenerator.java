@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+import javax.xml.namespace.QName;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import to.wetransform.hale.codegen.model.ModelInfo;
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Generates the {@link ModelInfo} implementation of a model. Model classes
+ * are looked up with generated switch statements on namespace and local
+ * name instead of a map populated on construction, so creating the model is
+ * cheap. The model does not reference the model classes directly, they are
+ * resolved by name when first looked up and then cached, so only classes
+ * that are actually used are loaded.
+ */
+class ModelInfoGenerator {
+
+  /**
+   * Maximum number of cases in a generated switch statement, to stay well
+   * below the size limit for methods with large schemas.
+   */
+  static final int MAX_CASES = 500;
+
+  private final Map<QName, ClassName> typeClasses;
+
+  /**
+   * Create a model info generator.
+   *
+   * @param typeClasses the generated model classes mapped by type name
+   */
+  public ModelInfoGenerator(Map<QName, ClassName> typeClasses) {
+    super();
+    this.typeClasses = typeClasses;
+  }
+
+  /**
+   * Create the model class.
+   *
+   * @param modelClassName the name of the model class
+   * @return the builder for the model class
+   */
+  public TypeSpec.Builder createModel(ClassName modelClassName) {
+    TypeName returnType = ParameterizedTypeName.get(ClassName.get(Class.class),
+        WildcardTypeName.subtypeOf(ModelObject.class));
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(modelClassName)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ClassName.get(ModelInfo.class));
+
+    // group classes by namespace, sorted for a stable output
+    SortedMap<String, SortedMap<String, ClassName>> sorted = new TreeMap<>();
+    for (Entry<QName, ClassName> entry : typeClasses.entrySet()) {
+      sorted.computeIfAbsent(entry.getKey().getNamespaceURI(), ns -> new TreeMap<>())
+          .put(entry.getKey().getLocalPart(), entry.getValue());
+    }
+    SortedMap<String, SortedMap<String, CodeBlock>> namespaces = new TreeMap<>();
+    int classIndex = 0;
+    for (Entry<String, SortedMap<String, ClassName>> namespace : sorted.entrySet()) {
+      SortedMap<String, CodeBlock> cases = new TreeMap<>();
+      for (Entry<String, ClassName> entry : namespace.getValue().entrySet()) {
+        cases.put(entry.getKey(), CodeBlock.of("resolve($L, $S)", classIndex++, getBinaryName(entry.getValue())));
+      }
+      namespaces.put(namespace.getKey(), cases);
+    }
+
+    // cache for resolved classes
+    TypeName classArray = ArrayTypeName.of(ParameterizedTypeName.get(ClassName.get(Class.class),
+        WildcardTypeName.subtypeOf(Object.class)));
+    FieldSpec classesField = FieldSpec.builder(classArray, "modelClasses",
+        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .initializer("new $T<?>[$L]", Class.class, classIndex)
+        .build();
+    builder.addField(classesField);
+
+    // classes are loaded without initialization, the cache is not
+    // synchronized as resolving a class again yields the same class
+    builder.addMethod(MethodSpec.methodBuilder("resolve")
+        .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .addParameter(int.class, "index")
+        .addParameter(String.class, "className")
+        .returns(returnType)
+        .addStatement("$T<?> result = $N[index]", Class.class, classesField)
+        .beginControlFlow("if (result == null)")
+        .beginControlFlow("try")
+        .addStatement("result = $T.forName(className, false, $T.class.getClassLoader()).asSubclass($T.class)",
+            Class.class, modelClassName, ModelObject.class)
+        .nextControlFlow("catch ($T e)", ClassNotFoundException.class)
+        .addStatement("throw new $T($S + className, e)", IllegalStateException.class, "Model class not found: ")
+        .endControlFlow()
+        .addStatement("$N[index] = result", classesField)
+        .endControlFlow()
+        .addStatement("return ($T) result", returnType)
+        .build());
+
+    MethodSpec.Builder getClassMethod = MethodSpec.methodBuilder("getModelClass")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(QName.class, "name")
+        .returns(returnType)
+        .beginControlFlow("switch (name.getNamespaceURI())");
+    int index = 0;
+    for (Entry<String, SortedMap<String, CodeBlock>> namespace : namespaces.entrySet()) {
+      String lookup = addLookup(builder, "getModelClass" + index++, returnType, namespace.getValue());
+      getClassMethod.addCode("case $S:\n$>return $N(name.getLocalPart());\n$<", namespace.getKey(), lookup);
+    }
+    getClassMethod.addCode("default:\n$>return null;\n$<")
+        .endControlFlow();
+
+    builder.addMethod(getClassMethod.build());
+
+    return builder;
+  }
+
+  /**
+   * Add static methods to a class that look up a value by a String key using
+   * switch statements. For many keys the lookup is split into multiple
+   * methods, selected by the hash code of the key.
+   *
+   * @param builder the class builder
+   * @param methodName the name of the lookup method
+   * @param returnType the type of the values
+   * @param cases the keys mapped to the code for the associated values
+   * @return the name of the lookup method, that takes the key as single
+   *   argument and returns <code>null</code> for unknown keys
+   */
+  public static String addLookup(TypeSpec.Builder builder, String methodName, TypeName returnType,
+      SortedMap<String, CodeBlock> cases) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .addParameter(String.class, "key")
+        .returns(returnType);
+
+    if (cases.size() <= MAX_CASES) {
+      method.beginControlFlow("switch (key)");
+      for (Entry<String, CodeBlock> entry : cases.entrySet()) {
+        method.addCode("case $S:\n$>return $L;\n$<", entry.getKey(), entry.getValue());
+      }
+    }
+    else {
+      // distribute the keys to buckets with about half the maximum size
+      int bucketCount = (cases.size() * 2 + MAX_CASES - 1) / MAX_CASES;
+      List<SortedMap<String, CodeBlock>> buckets = new ArrayList<>(bucketCount);
+      for (int i = 0; i < bucketCount; i++) {
+        buckets.add(new TreeMap<>());
+      }
+      for (Entry<String, CodeBlock> entry : cases.entrySet()) {
+        buckets.get(bucket(entry.getKey(), bucketCount)).put(entry.getKey(), entry.getValue());
+      }
+
+      method.beginControlFlow("switch ((key.hashCode() & 0x7fffffff) % $L)", bucketCount);
+      for (int i = 0; i < bucketCount; i++) {
+        if (!buckets.get(i).isEmpty()) {
+          String bucketMethod = addLookup(builder, methodName + "_" + i, returnType, buckets.get(i));
+          method.addCode("case $L:\n$>return $N(key);\n$<", i, bucketMethod);
+        }
+      }
+    }
+    method.addCode("default:\n$>return null;\n$<")
+        .endControlFlow();
+
+    builder.addMethod(method.build());
+    return methodName;
+  }
+
+  /**
+   * Get the binary name of a class, as returned by {@link Class#getName()}.
+   *
+   * @param className the class name
+   * @return the binary name
+   */
+  public static String getBinaryName(ClassName className) {
+    String simpleNames = String.join("$", className.simpleNames());
+    return (className.packageName().isEmpty()) ? (simpleNames) : (className.packageName() + "." + simpleNames);
+  }
+
+  private static int bucket(String key, int bucketCount) {
+    return (key.hashCode() & 0x7fffffff) % bucketCount;
+  }
+
+}
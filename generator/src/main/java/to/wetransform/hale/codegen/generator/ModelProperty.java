@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import javax.xml.namespace.QName;
+
+import com.squareup.javapoet.TypeName;
+
+/**
+ * Information on a property of a generated model or group class.
+ */
+class ModelProperty {
+
+  /**
+   * Kinds of properties.
+   */
+  public enum Kind {
+    /** The instance value */
+    VALUE,
+    /** Property with a simple type */
+    SIMPLE,
+    /** Property with a complex type represented by a model class */
+    COMPLEX,
+    /** Group or choice represented by a group class */
+    GROUP
+  }
+
+  private final String fieldName;
+  private final QName name;
+  private final Kind kind;
+  private final TypeName type;
+  private final boolean multiple;
+  private final boolean attribute;
+  private final String nameConstant;
+
+  /**
+   * Create information on a property.
+   *
+   * @param fieldName the name of the Java field
+   * @param name the property name, <code>null</code> for the instance value
+   * @param kind the kind of property
+   * @param type the type of a single property value
+   * @param multiple if the property may occur multiple times and is
+   *   represented by a list
+   * @param attribute if the property is represented by an XML attribute
+   * @param nameConstant the name of the constant holding the property name
+   *   in the generated class, <code>null</code> for the instance value
+   */
+  public ModelProperty(String fieldName, QName name, Kind kind, TypeName type, boolean multiple,
+      boolean attribute, String nameConstant) {
+    super();
+    this.fieldName = fieldName;
+    this.name = name;
+    this.kind = kind;
+    this.type = type;
+    this.multiple = multiple;
+    this.attribute = attribute;
+    this.nameConstant = nameConstant;
+  }
+
+  /**
+   * @return the name of the Java field
+   */
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  /**
+   * @return the property name, <code>null</code> for the instance value
+   */
+  public QName getName() {
+    return name;
+  }
+
+  /**
+   * @return the kind of property
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return the type of a single property value
+   */
+  public TypeName getType() {
+    return type;
+  }
+
+  /**
+   * @return if the property is represented by a list
+   */
+  public boolean isMultiple() {
+    return multiple;
+  }
+
+  /**
+   * @return if the property is represented by an XML attribute
+   */
+  public boolean isAttribute() {
+    return attribute;
+  }
+
+  /**
+   * @return the name of the static constant holding the property name in
+   *   the generated class, <code>null</code> for the instance value
+   */
+  public String getNameConstant() {
+    return nameConstant;
+  }
+
+  /**
+   * @return the name of the getter method
+   */
+  public String getGetterName() {
+    return "get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+  }
+
+  /**
+   * @return the name of the setter method
+   */
+  public String getSetterName() {
+    return "set" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+  }
+
+}
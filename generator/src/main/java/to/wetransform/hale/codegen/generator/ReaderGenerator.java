@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+import to.wetransform.hale.codegen.model.xml.ElementReader;
+import to.wetransform.hale.codegen.model.xml.XmlReaderContext;
+import to.wetransform.hale.codegen.model.xml.XmlValues;
+
+/**
+ * Generates a StAX based reader for each generated model and group class,
+ * that populates model objects directly from XML without creating hale
+ * instances first. Readers for model classes are {@link ElementReader}s,
+ * a generated model reader selects them based on the element names declared
+ * with the types.
+ *
+ * The generated methods for matching child elements return <code>0</code>
+ * if the element is not a property of the object, <code>1</code> if it was
+ * read and <code>2</code> if it belongs to a group object that is already
+ * complete, so a new group object needs to be started.
+ */
+class ReaderGenerator {
+
+  private final Map<ClassName, ModelClass> classes;
+
+  private final CompanionNames readerNames;
+
+  /**
+   * Create a reader generator.
+   *
+   * @param classes the generated model and group classes
+   */
+  public ReaderGenerator(Map<ClassName, ModelClass> classes) {
+    super();
+    this.classes = classes;
+    this.readerNames = new CompanionNames(classes, "Reader");
+  }
+
+  /**
+   * Get the name of the reader class for a model or group class.
+   *
+   * @param className the name of the model or group class
+   * @return the name of the reader class
+   */
+  public ClassName getReaderName(ClassName className) {
+    return readerNames.get(className);
+  }
+
+  /**
+   * Create the reader class for a model or group class.
+   *
+   * @param modelClass the model or group class
+   * @return the Java file of the reader class
+   */
+  public JavaFile createReader(ModelClass modelClass) {
+    ClassName className = modelClass.getClassName();
+    ClassName readerName = getReaderName(className);
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(readerName)
+        .addModifiers(Modifier.PUBLIC);
+
+    if (modelClass.isGroup()) {
+      builder.addMethod(createIsElementMethod(modelClass));
+    }
+    else {
+      builder.addSuperinterface(ClassName.get(ElementReader.class));
+
+      builder.addField(FieldSpec.builder(readerName, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+          .initializer("new $T()", readerName)
+          .build());
+
+      builder.addMethod(MethodSpec.methodBuilder("read")
+          .addAnnotation(Override.class)
+          .addModifiers(Modifier.PUBLIC)
+          .addParameter(XMLStreamReader.class, "reader")
+          .addParameter(XmlReaderContext.class, "context")
+          .addException(XMLStreamException.class)
+          .returns(className)
+          .addStatement("$T target = new $T()", className, className)
+          .addStatement("read(reader, target, context)")
+          .addStatement("return target")
+          .build());
+
+      builder.addMethod(createReadMethod(modelClass));
+    }
+
+    builder.addMethod(createAttributesMethod(modelClass));
+    builder.addMethod(createElementMethod(modelClass));
+
+    return JavaFile.builder(readerName.packageName(), builder.build()).build();
+  }
+
+  /**
+   * Create the model reader, that reads model objects from the elements
+   * declared with the types. Readers are looked up with a switch on the
+   * element namespace and local name.
+   *
+   * @param modelReaderName the name of the model reader class
+   * @return the Java file of the model reader class
+   */
+  public JavaFile createModelReader(ClassName modelReaderName) {
+    TypeSpec.Builder builder = TypeSpec.classBuilder(modelReaderName)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ClassName.get(ElementReader.class));
+
+    // sorted for a stable output
+    SortedMap<String, SortedMap<String, CodeBlock>> namespaces = new TreeMap<>();
+    for (ModelClass modelClass : classes.values()) {
+      for (QName element : modelClass.getElements()) {
+        namespaces.computeIfAbsent(element.getNamespaceURI(), ns -> new TreeMap<>())
+            .put(element.getLocalPart(), CodeBlock.of("$T.INSTANCE", getReaderName(modelClass.getClassName())));
+      }
+    }
+
+    MethodSpec.Builder method = MethodSpec.methodBuilder("read")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(XMLStreamReader.class, "reader")
+        .addParameter(XmlReaderContext.class, "context")
+        .addException(XMLStreamException.class)
+        .returns(ModelObject.class)
+        .addStatement("$T elementReader", ElementReader.class)
+        .beginControlFlow("switch ($T.getNamespaceURI(reader))", XmlValues.class);
+    int index = 0;
+    for (Entry<String, SortedMap<String, CodeBlock>> namespace : namespaces.entrySet()) {
+      String lookup = ModelInfoGenerator.addLookup(builder, "getReader" + index++,
+          ClassName.get(ElementReader.class), namespace.getValue());
+      method.addCode("case $S:\n$>elementReader = $N(reader.getLocalName());\nbreak;\n$<", namespace.getKey(),
+          lookup);
+    }
+    method.addCode("default:\n$>elementReader = null;\n$<")
+        .endControlFlow()
+        .addStatement("return (elementReader == null) ? (null) : (elementReader.read(reader, context))");
+
+    builder.addMethod(method.build());
+
+    return JavaFile.builder(modelReaderName.packageName(), builder.build()).build();
+  }
+
+  private MethodSpec createReadMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("read")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamReader.class, "reader")
+        .addParameter(modelClass.getClassName(), "target")
+        .addParameter(XmlReaderContext.class, "context")
+        .addException(XMLStreamException.class);
+
+    //FIXME magic property names 'value' and 'geometry', see Generator
+    ModelProperty value = findValue(modelClass, "value");
+    ModelProperty geometry = findValue(modelClass, "geometry");
+
+    method.addStatement("attributes(reader, target)");
+    if (value != null) {
+      method.addStatement("$T text = new $T()", StringBuilder.class, StringBuilder.class);
+    }
+    method.addStatement("int event");
+    method.beginControlFlow("while ((event = reader.next()) != $T.END_ELEMENT)", XMLStreamConstants.class);
+    method.beginControlFlow("if (event == $T.START_ELEMENT)", XMLStreamConstants.class);
+    if (geometry != null) {
+      // the geometry reader takes precedence over the geometry elements
+      method.beginControlFlow("if (context.hasGeometryReader())")
+          .addStatement("$T geometry = context.readGeometry(reader)", Object.class)
+          .beginControlFlow("if (geometry instanceof $T)", geometry.getType())
+          .addStatement("target.$L(($T) geometry)", geometry.getSetterName(), geometry.getType())
+          .endControlFlow()
+          .nextControlFlow("else if (element(reader, target, context) == 0)");
+    }
+    else {
+      method.beginControlFlow("if (element(reader, target, context) == 0)");
+    }
+    method.addStatement("$T.skipElement(reader)", XmlValues.class)
+        .endControlFlow();
+    if (value != null) {
+      method.nextControlFlow("else if (event == $T.CHARACTERS || event == $T.CDATA || event == $T.SPACE)",
+          XMLStreamConstants.class, XMLStreamConstants.class, XMLStreamConstants.class)
+          .addStatement("text.append(reader.getText())");
+    }
+    method.endControlFlow();
+    method.endControlFlow();
+
+    if (value != null) {
+      method.beginControlFlow("if (text.length() > 0)")
+          .addStatement("target.$L($T.parse(text.toString(), $T.class))", value.getSetterName(), XmlValues.class,
+              value.getType())
+          .endControlFlow();
+    }
+
+    return method.build();
+  }
+
+  private MethodSpec createAttributesMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("attributes")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamReader.class, "reader")
+        .addParameter(modelClass.getClassName(), "target")
+        .returns(boolean.class);
+
+    NameAllocator names = createNames();
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("boolean found = $T.attributes(reader, target)",
+          getReaderName(modelClass.getSuperclass()));
+    }
+    else {
+      method.addStatement("boolean found = false");
+    }
+
+    boolean valueDeclared = false;
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.isAttribute()) {
+        if (!valueDeclared) {
+          method.addStatement("$T value", String.class);
+          valueDeclared = true;
+        }
+
+        String namespace = property.getName().getNamespaceURI();
+        // unqualified attributes have no namespace
+        method.addStatement("value = reader.getAttributeValue($S, $S)",
+            (namespace.isEmpty()) ? (null) : (namespace), property.getName().getLocalPart());
+        method.beginControlFlow("if (value != null)");
+        if (property.isMultiple()) {
+          method.addStatement("target.$L().add($T.parse(value, $T.class))", property.getGetterName(),
+              XmlValues.class, property.getType());
+        }
+        else {
+          method.addStatement("target.$L($T.parse(value, $T.class))", property.getSetterName(),
+              XmlValues.class, property.getType());
+        }
+        method.addStatement("found = true")
+            .endControlFlow();
+      }
+      else if (property.getKind() == ModelProperty.Kind.GROUP
+          && classes.get(property.getType()).hasAttributes(classes)) {
+        // attributes may be part of groups
+        ClassName groupReader = getReaderName((ClassName) property.getType());
+        String group = names.newName(property.getFieldName() + "Group");
+        if (property.isMultiple()) {
+          method.addStatement("$T $N = new $T()", property.getType(), group, property.getType());
+          method.beginControlFlow("if ($T.attributes(reader, $N))", groupReader, group)
+              .addStatement("target.$L().add($N)", property.getGetterName(), group);
+        }
+        else {
+          method.addStatement("$T $N = (target.$L() != null) ? (target.$L()) : (new $T())", property.getType(), group,
+              property.getGetterName(), property.getGetterName(), property.getType());
+          method.beginControlFlow("if ($T.attributes(reader, $N))", groupReader, group)
+              .addStatement("target.$L($N)", property.getSetterName(), group);
+        }
+        method.addStatement("found = true")
+            .endControlFlow();
+      }
+    }
+
+    method.addStatement("return found");
+
+    return method.build();
+  }
+
+  private MethodSpec createElementMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("element")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamReader.class, "reader")
+        .addParameter(modelClass.getClassName(), "target")
+        .addParameter(XmlReaderContext.class, "context")
+        .addException(XMLStreamException.class)
+        .returns(int.class);
+
+    NameAllocator names = createNames();
+
+    List<ModelProperty> properties = getElementProperties(modelClass);
+
+    boolean choice = modelClass.isChoice() && !properties.isEmpty();
+    if (choice) {
+      // only one of the properties of a choice may be set
+      CodeBlock.Builder empty = CodeBlock.builder().add("boolean empty = ");
+      for (int i = 0; i < properties.size(); i++) {
+        ModelProperty property = properties.get(i);
+        if (i > 0) {
+          empty.add("\n&& ");
+        }
+        if (property.isMultiple()) {
+          empty.add("target.$L().isEmpty()", property.getGetterName());
+        }
+        else {
+          empty.add("target.$L() == null", property.getGetterName());
+        }
+      }
+      method.addStatement("$L", empty.build());
+    }
+
+    for (ModelProperty property : properties) {
+      if (property.getKind() == ModelProperty.Kind.GROUP) {
+        addGroupElement(method, modelClass, property, choice, names);
+        continue;
+      }
+
+      method.beginControlFlow("if ($T.isElement(reader, $S, $S))", XmlValues.class,
+          property.getName().getNamespaceURI(), property.getName().getLocalPart());
+
+      if (choice) {
+        if (property.isMultiple()) {
+          method.addStatement("if (!empty && target.$L().isEmpty()) return 2", property.getGetterName());
+        }
+        else {
+          method.addStatement("if (!empty) return 2");
+        }
+      }
+      else if (modelClass.isGroup() && !property.isMultiple()) {
+        // a repeated group starts over
+        method.addStatement("if (target.$L() != null) return 2", property.getGetterName());
+      }
+
+      CodeBlock value;
+      if (property.getKind() == ModelProperty.Kind.SIMPLE) {
+        value = CodeBlock.of("$T.readValue(reader, $T.class)", XmlValues.class, property.getType());
+      }
+      else {
+        value = CodeBlock.of("$T.INSTANCE.read(reader, context)", getReaderName((ClassName) property.getType()));
+      }
+
+      if (property.isMultiple()) {
+        method.addStatement("target.$L().add($L)", property.getGetterName(), value);
+      }
+      else {
+        method.addStatement("target.$L($L)", property.getSetterName(), value);
+      }
+
+      method.addStatement("return 1")
+          .endControlFlow();
+    }
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("return $T.element(reader, target, context)", getReaderName(modelClass.getSuperclass()));
+    }
+    else {
+      method.addStatement("return 0");
+    }
+
+    return method.build();
+  }
+
+  private void addGroupElement(MethodSpec.Builder method, ModelClass modelClass, ModelProperty property,
+      boolean choice, NameAllocator names) {
+    ClassName groupClass = (ClassName) property.getType();
+    ClassName groupReader = getReaderName(groupClass);
+    String group = names.newName(property.getFieldName() + "Group");
+
+    method.beginControlFlow("if ($T.isElement(reader))", groupReader);
+
+    if (choice) {
+      method.addStatement((property.isMultiple())
+          ? ("if (!empty && target.$L().isEmpty()) return 2")
+          : ("if (!empty && target.$L() == null) return 2"), property.getGetterName());
+    }
+
+    if (property.isMultiple()) {
+      // continue with the last group object or start a new one
+      String groups = names.newName(property.getFieldName() + "Groups");
+      method.addStatement("$T $N = target.$L()", ParameterizedTypeName.get(ClassName.get(List.class), groupClass),
+          groups, property.getGetterName());
+      method.addStatement("$T $N = ($N.isEmpty()) ? (null) : ($N.get($N.size() - 1))", groupClass, group, groups,
+          groups, groups);
+      method.beginControlFlow("if ($N == null || $T.element(reader, $N, context) != 1)", group, groupReader, group)
+          .addStatement("$N = new $T()", group, groupClass)
+          .addStatement("$N.add($N)", groups, group)
+          .beginControlFlow("if ($T.element(reader, $N, context) != 1)", groupReader, group)
+          .addStatement("$T.skipElement(reader)", XmlValues.class)
+          .endControlFlow()
+          .endControlFlow()
+          .addStatement("return 1");
+    }
+    else {
+      method.addStatement("$T $N = target.$L()", groupClass, group, property.getGetterName())
+          .beginControlFlow("if ($N == null)", group)
+          .addStatement("$N = new $T()", group, groupClass)
+          .addStatement("target.$L($N)", property.getSetterName(), group)
+          .endControlFlow();
+      if (modelClass.isGroup()) {
+        method.addStatement("return $T.element(reader, $N, context)", groupReader, group);
+      }
+      else {
+        // an element that does not fit into the group any more is skipped
+        method.beginControlFlow("if ($T.element(reader, $N, context) != 1)", groupReader, group)
+            .addStatement("$T.skipElement(reader)", XmlValues.class)
+            .endControlFlow()
+            .addStatement("return 1");
+      }
+    }
+
+    method.endControlFlow();
+  }
+
+  private MethodSpec createIsElementMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("isElement")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamReader.class, "reader")
+        .returns(boolean.class);
+
+    List<ModelProperty> properties = getElementProperties(modelClass);
+    if (properties.isEmpty()) {
+      method.addStatement("return false");
+    }
+    else {
+      CodeBlock.Builder condition = CodeBlock.builder().add("return ");
+      for (int i = 0; i < properties.size(); i++) {
+        ModelProperty property = properties.get(i);
+        if (i > 0) {
+          condition.add("\n|| ");
+        }
+        if (property.getKind() == ModelProperty.Kind.GROUP) {
+          condition.add("$T.isElement(reader)", getReaderName((ClassName) property.getType()));
+        }
+        else {
+          condition.add("$T.isElement(reader, $S, $S)", XmlValues.class, property.getName().getNamespaceURI(),
+              property.getName().getLocalPart());
+        }
+      }
+      method.addStatement("$L", condition.build());
+    }
+
+    return method.build();
+  }
+
+  /**
+   * Get the properties of a class that are represented by child elements.
+   *
+   * @param modelClass the model or group class
+   * @return the properties represented by child elements
+   */
+  private List<ModelProperty> getElementProperties(ModelClass modelClass) {
+    List<ModelProperty> result = new ArrayList<>();
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.getKind() != ModelProperty.Kind.VALUE && !property.isAttribute()) {
+        result.add(property);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find a value property of a class or its super classes.
+   *
+   * @param modelClass the model class
+   * @param fieldName the field name of the value property
+   * @return the value property or <code>null</code>
+   */
+  private ModelProperty findValue(ModelClass modelClass, String fieldName) {
+    ModelClass current = modelClass;
+    while (current != null) {
+      for (ModelProperty property : current.getProperties()) {
+        if (property.getKind() == ModelProperty.Kind.VALUE && property.getFieldName().equals(fieldName)) {
+          return property;
+        }
+      }
+      current = (current.getSuperclass() == null) ? (null) : (classes.get(current.getSuperclass()));
+    }
+    return null;
+  }
+
+  private static NameAllocator createNames() {
+    NameAllocator names = new NameAllocator();
+    for (String name : new String[] { "reader", "target", "context", "found", "value", "empty" }) {
+      names.newName(name);
+    }
+    return names;
+  }
+
+}
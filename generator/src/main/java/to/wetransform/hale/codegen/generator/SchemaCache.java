@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache for loaded schemas. Entries are keyed by the schema location
+ * and the content of all schemas it imports, includes or redefines, so a
+ * change to any of the local schema files automatically results in a new
+ * entry. Remote schemas only contribute their location to the key.
+ */
+public class SchemaCache {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaCache.class);
+
+  private static final String EXTENSION = ".schema";
+
+  private final Path folder;
+
+  /**
+   * Create a schema cache.
+   *
+   * @param folder the folder to store cache entries in
+   */
+  public SchemaCache(File folder) {
+    super();
+    this.folder = folder.toPath();
+  }
+
+  /**
+   * Determine the cache key for a schema.
+   *
+   * @param schema the schema location
+   * @return the cache key
+   */
+  public String getKey(URI schema) {
+    MessageDigest digest = createDigest();
+    digest.update(Integer.toString(SchemaModelFormat.VERSION).getBytes(StandardCharsets.UTF_8));
+    SchemaImports.collect(schema, (location, content) -> {
+      digest.update(location.toString().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      if (content != null) {
+        digest.update(createDigest().digest(content));
+      }
+    });
+
+    StringBuilder result = new StringBuilder();
+    for (byte b : digest.digest()) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Load a schema from the cache.
+   *
+   * @param key the cache key
+   * @return the cached schema or <code>null</code> if there is no usable
+   *   cache entry
+   */
+  public SchemaModel load(String key) {
+    Path file = folder.resolve(key + EXTENSION);
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      return SchemaModelFormat.read(in);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Ignoring unusable schema cache entry " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Store a schema in the cache.
+   *
+   * @param key the cache key
+   * @param schema the schema to store
+   * @throws IOException if writing the cache entry fails
+   */
+  public void store(String key, SchemaModel schema) throws IOException {
+    Files.createDirectories(folder);
+    Path file = folder.resolve(key + EXTENSION);
+
+    // write to a temporary file first so concurrent runs never see partial entries
+    Path tempFile = Files.createTempFile(folder, key, ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+        SchemaModelFormat.write(schema, out);
+      }
+      try {
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+  }
+
+}
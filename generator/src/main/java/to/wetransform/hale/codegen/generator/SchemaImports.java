@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects an XML Schema together with the schemas it imports, includes or
+ * redefines, transitively.
+ */
+class SchemaImports {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaImports.class);
+
+  private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
+  /**
+   * Collect a schema and all schemas it references. Remote schemas (HTTP)
+   * are not read, so neither their content nor their imports are visited.
+   *
+   * @param schema the schema location
+   * @param visitor visitor called for each schema with its location and its
+   *   content, the content is <code>null</code> for remote schemas or schemas
+   *   that could not be read
+   * @return the locations of all schemas, starting with the given schema
+   */
+  public static Set<URI> collect(URI schema, BiConsumer<URI, byte[]> visitor) {
+    Set<URI> result = new LinkedHashSet<>();
+    Deque<URI> queue = new ArrayDeque<>();
+    queue.add(schema.normalize());
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+    while (!queue.isEmpty()) {
+      URI location = queue.poll();
+      if (!result.add(location)) {
+        continue;
+      }
+
+      byte[] content = null;
+      if (!isRemote(location)) {
+        try {
+          content = read(location);
+          for (String reference : getReferences(factory, content)) {
+            try {
+              queue.add(new URL(location.toURL(), reference).toURI().normalize());
+            } catch (IOException | URISyntaxException e) {
+              log.warn("Could not resolve schema location " + reference + " in " + location, e);
+            }
+          }
+        } catch (IOException | XMLStreamException e) {
+          log.warn("Could not read schema " + location, e);
+        }
+      }
+      visitor.accept(location, content);
+    }
+
+    return result;
+  }
+
+  /**
+   * Determines if a schema location is remote.
+   *
+   * @param location the schema location
+   * @return if the location is remote and should not be read
+   */
+  public static boolean isRemote(URI location) {
+    String scheme = location.getScheme();
+    return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+  }
+
+  private static byte[] read(URI location) throws IOException {
+    try (InputStream in = location.toURL().openStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static Set<String> getReferences(XMLInputFactory factory, byte[] content) throws XMLStreamException {
+    Set<String> references = new LinkedHashSet<>();
+    XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(content));
+    try {
+      int depth = 0;
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (depth == 2) {
+            if (!XSD_NAMESPACE.equals(reader.getNamespaceURI())) {
+              continue;
+            }
+            switch (reader.getLocalName()) {
+            case "import":
+            case "include":
+            case "redefine":
+            case "override":
+              String location = reader.getAttributeValue(null, "schemaLocation");
+              if (location != null && !location.isEmpty()) {
+                references.add(location);
+              }
+              break;
+            case "annotation":
+              break;
+            default:
+              // references must precede all other schema components
+              return references;
+            }
+          }
+        }
+        else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return references;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.Collection;
+import java.util.Map;
+
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * The information of a loaded schema that is needed for generating a model.
+ */
+public class SchemaModel {
+
+  private final Collection<? extends TypeDefinition> types;
+
+  private final Map<String, String> prefixes;
+
+  private final String namespace;
+
+  /**
+   * Create a schema model.
+   *
+   * @param types the mapping relevant types
+   * @param prefixes the namespace prefixes, namespaces mapped to prefixes
+   * @param namespace the main namespace of the schema
+   */
+  public SchemaModel(Collection<? extends TypeDefinition> types, Map<String, String> prefixes, String namespace) {
+    super();
+    this.types = types;
+    this.prefixes = prefixes;
+    this.namespace = namespace;
+  }
+
+  /**
+   * @return the mapping relevant types
+   */
+  public Collection<? extends TypeDefinition> getTypes() {
+    return types;
+  }
+
+  /**
+   * @return the namespace prefixes, namespaces mapped to prefixes
+   */
+  public Map<String, String> getPrefixes() {
+    return prefixes;
+  }
+
+  /**
+   * @return the main namespace of the schema
+   */
+  public String getNamespace() {
+    return namespace;
+  }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.DefinitionGroup;
+import eu.esdihumboldt.hale.common.schema.model.GroupPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.ChoiceFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.NillableFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.AugmentedValueFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.HasValueFlag;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultGroupPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlAttributeFlag;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
+import eu.esdihumboldt.hale.io.xsd.model.XmlElement;
+
+/**
+ * Compact binary format for a {@link SchemaModel}. Only the parts of the
+ * type definitions the {@link Generator} uses are stored: names, super types,
+ * declared children and the effective values of the relevant constraints.
+ * Types are read back as hale default definitions, with the XML element and
+ * attribute information used for generating readers.
+ */
+class SchemaModelFormat {
+
+  private static final int MAGIC = 0x48434753; // HCGS
+
+  /**
+   * Version of the format, to be increased when the format or the
+   * information needed by the generator changes.
+   */
+  static final int VERSION = 3;
+
+  private static final byte PROPERTY = 0;
+  private static final byte GROUP = 1;
+
+  /**
+   * Write a schema model.
+   *
+   * @param model the schema model
+   * @param out the output to write to
+   * @throws IOException if writing fails
+   */
+  public static void write(SchemaModel model, DataOutput out) throws IOException {
+    // collect all types reachable from the mapping relevant types
+    Map<TypeDefinition, Integer> ids = new IdentityHashMap<>();
+    List<TypeDefinition> types = new ArrayList<>();
+    for (TypeDefinition type : model.getTypes()) {
+      collectType(type, ids, types);
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    writeString(model.getNamespace(), out);
+    out.writeInt(model.getPrefixes().size());
+    for (Map.Entry<String, String> prefix : model.getPrefixes().entrySet()) {
+      writeString(prefix.getKey(), out);
+      writeString(prefix.getValue(), out);
+    }
+
+    out.writeInt(types.size());
+    for (TypeDefinition type : types) {
+      writeName(type.getName(), out);
+      out.writeBoolean(type.getConstraint(HasValueFlag.class).isEnabled());
+      out.writeBoolean(type.getConstraint(AugmentedValueFlag.class).isEnabled());
+      Class<?> binding = type.getConstraint(Binding.class).getBinding();
+      writeString((binding == null) ? (null) : (binding.getName()), out);
+      Collection<? extends XmlElement> elements = type.getConstraint(XmlElements.class).getElements();
+      out.writeInt(elements.size());
+      for (XmlElement element : elements) {
+        writeName(element.getName(), out);
+      }
+    }
+    for (TypeDefinition type : types) {
+      out.writeInt((type.getSuperType() == null) ? (-1) : (ids.get(type.getSuperType())));
+      writeChildren(type, ids, out);
+    }
+
+    out.writeInt(model.getTypes().size());
+    for (TypeDefinition type : model.getTypes()) {
+      out.writeInt(ids.get(type));
+    }
+  }
+
+  /**
+   * Read a schema model.
+   *
+   * @param in the input to read from
+   * @return the schema model
+   * @throws IOException if reading fails or the input is not in the expected
+   *   format
+   */
+  public static SchemaModel read(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a schema model");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported schema model version " + version);
+    }
+
+    String namespace = readString(in);
+    int prefixCount = in.readInt();
+    Map<String, String> prefixes = new LinkedHashMap<>();
+    for (int i = 0; i < prefixCount; i++) {
+      prefixes.put(readString(in), readString(in));
+    }
+
+    DefaultTypeDefinition[] types = new DefaultTypeDefinition[in.readInt()];
+    for (int i = 0; i < types.length; i++) {
+      DefaultTypeDefinition type = new DefaultTypeDefinition(readName(in));
+      type.setConstraint(HasValueFlag.get(in.readBoolean()));
+      type.setConstraint(AugmentedValueFlag.get(in.readBoolean()));
+      String binding = readString(in);
+      if (binding != null) {
+        try {
+          type.setConstraint(Binding.get(Class.forName(binding, false, SchemaModelFormat.class.getClassLoader())));
+        } catch (ClassNotFoundException e) {
+          throw new IOException("Binding class not available: " + binding, e);
+        }
+      }
+      int elementCount = in.readInt();
+      if (elementCount > 0) {
+        XmlElements elements = new XmlElements();
+        for (int j = 0; j < elementCount; j++) {
+          elements.addElement(new XmlElement(readName(in), type, null));
+        }
+        type.setConstraint(elements);
+      }
+      types[i] = type;
+    }
+    for (DefaultTypeDefinition type : types) {
+      int superType = in.readInt();
+      if (superType >= 0) {
+        type.setSuperType(types[superType]);
+      }
+      readChildren(type, types, in);
+    }
+
+    int typeCount = in.readInt();
+    List<TypeDefinition> mappingRelevant = new ArrayList<>(typeCount);
+    for (int i = 0; i < typeCount; i++) {
+      mappingRelevant.add(types[in.readInt()]);
+    }
+
+    return new SchemaModel(mappingRelevant, prefixes, namespace);
+  }
+
+  private static void collectType(TypeDefinition type, Map<TypeDefinition, Integer> ids,
+      List<TypeDefinition> types) {
+    // iterative to support deep type hierarchies
+    List<TypeDefinition> pending = new ArrayList<>();
+    pending.add(type);
+    while (!pending.isEmpty()) {
+      TypeDefinition current = pending.remove(pending.size() - 1);
+      if (current == null || ids.containsKey(current)) {
+        continue;
+      }
+      ids.put(current, types.size());
+      types.add(current);
+
+      pending.add(current.getSuperType());
+      collectPropertyTypes(current, pending);
+    }
+  }
+
+  private static void collectPropertyTypes(DefinitionGroup group, List<TypeDefinition> pending) {
+    for (ChildDefinition<?> child : group.getDeclaredChildren()) {
+      if (child.asProperty() != null) {
+        pending.add(child.asProperty().getPropertyType());
+      }
+      else if (child.asGroup() != null) {
+        collectPropertyTypes(child.asGroup(), pending);
+      }
+    }
+  }
+
+  private static void writeChildren(DefinitionGroup group, Map<TypeDefinition, Integer> ids, DataOutput out)
+      throws IOException {
+    List<ChildDefinition<?>> children = new ArrayList<>();
+    for (ChildDefinition<?> child : group.getDeclaredChildren()) {
+      if (child.asProperty() != null || child.asGroup() != null) {
+        children.add(child);
+      }
+    }
+
+    out.writeInt(children.size());
+    for (ChildDefinition<?> child : children) {
+      writeName(child.getName(), out);
+      if (child.asProperty() != null) {
+        PropertyDefinition property = child.asProperty();
+        out.writeByte(PROPERTY);
+        writeCardinality(property.getConstraint(Cardinality.class), out);
+        out.writeBoolean(property.getConstraint(XmlAttributeFlag.class).isEnabled());
+        out.writeBoolean(property.getConstraint(NillableFlag.class).isEnabled());
+        out.writeInt(ids.get(property.getPropertyType()));
+      }
+      else {
+        GroupPropertyDefinition groupProperty = child.asGroup();
+        out.writeByte(GROUP);
+        writeCardinality(groupProperty.getConstraint(Cardinality.class), out);
+        writeString(groupProperty.getDisplayName(), out);
+        out.writeBoolean(groupProperty.getConstraint(ChoiceFlag.class).isEnabled());
+        out.writeBoolean(groupProperty.allowFlatten());
+        writeChildren(groupProperty, ids, out);
+      }
+    }
+  }
+
+  private static void readChildren(DefinitionGroup group, DefaultTypeDefinition[] types, DataInput in)
+      throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      QName name = readName(in);
+      byte kind = in.readByte();
+      Cardinality cardinality = Cardinality.get(in.readLong(), in.readLong());
+      switch (kind) {
+      case PROPERTY:
+        // the property adds itself to the declaring group
+        boolean attribute = in.readBoolean();
+        boolean nillable = in.readBoolean();
+        DefaultPropertyDefinition property = new DefaultPropertyDefinition(name, group, types[in.readInt()]);
+        property.setConstraint(cardinality);
+        property.setConstraint((attribute) ? (XmlAttributeFlag.ENABLED) : (XmlAttributeFlag.DISABLED));
+        property.setConstraint((nillable) ? (NillableFlag.ENABLED) : (NillableFlag.DISABLED));
+        break;
+      case GROUP:
+        String displayName = readString(in);
+        boolean choice = in.readBoolean();
+        DefaultGroupPropertyDefinition groupProperty = new DefaultGroupPropertyDefinition(name, group,
+            in.readBoolean());
+        groupProperty.setDisplayName(displayName);
+        groupProperty.setConstraint(cardinality);
+        groupProperty.setConstraint(ChoiceFlag.get(choice));
+        readChildren(groupProperty, types, in);
+        break;
+      default:
+        throw new IOException("Unknown child kind " + kind);
+      }
+    }
+  }
+
+  private static void writeCardinality(Cardinality cardinality, DataOutput out) throws IOException {
+    out.writeLong(cardinality.getMinOccurs());
+    out.writeLong(cardinality.getMaxOccurs());
+  }
+
+  private static void writeName(QName name, DataOutput out) throws IOException {
+    out.writeUTF(name.getNamespaceURI());
+    out.writeUTF(name.getLocalPart());
+    out.writeUTF(name.getPrefix());
+  }
+
+  private static QName readName(DataInput in) throws IOException {
+    return new QName(in.readUTF(), in.readUTF(), in.readUTF());
+  }
+
+  private static void writeString(String value, DataOutput out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    return (in.readBoolean()) ? (in.readUTF()) : (null);
+  }
+
+}
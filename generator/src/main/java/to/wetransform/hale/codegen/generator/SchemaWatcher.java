@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a schema and its local imports and regenerates the model when any
+ * of the files change. The hale»studio registry stays initialized between
+ * runs, and with incremental generation only changed classes are written.
+ *
+ * Loaded schemas are kept in a schema cache, a temporary folder if none is
+ * configured, so saving a schema without changing it or reverting a change
+ * does not parse it again. Parsed schemas cannot be partially reused though,
+ * so any change of a schema file parses the schema including all its
+ * imports, e.g. GML, again.
+ */
+public class SchemaWatcher {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaWatcher.class);
+
+  /**
+   * Time to wait for further changes after a change was detected, as editors
+   * often write a file in multiple steps.
+   */
+  private static final long DEBOUNCE_MILLIS = 200;
+
+  private final URI schema;
+
+  private final File targetFolder;
+
+  private final GeneratorOptions options;
+
+  private final Map<Path, WatchKey> watchedFolders = new HashMap<>();
+
+  private Set<Path> watchedFiles = new HashSet<>();
+
+  /**
+   * Create a schema watcher.
+   *
+   * @param schema the schema location
+   * @param targetFolder the target folder for the generated model
+   * @param options the generator options
+   */
+  public SchemaWatcher(URI schema, File targetFolder, GeneratorOptions options) {
+    super();
+    this.schema = schema;
+    this.targetFolder = targetFolder;
+    this.options = options;
+  }
+
+  /**
+   * Generate the model and regenerate it whenever the schema or one of its
+   * local imports changes. Blocks until the thread is interrupted.
+   *
+   * @throws IOException if watching the files fails
+   * @throws InterruptedException if the thread was interrupted
+   */
+  public void watch() throws IOException, InterruptedException {
+    if (options.getSchemaCache() == null) {
+      File cache = Files.createTempDirectory("hale-codegen-schemas").toFile();
+      log.info("Using temporary schema cache " + cache);
+      options.setSchemaCache(cache);
+    }
+
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      generate(watchService);
+
+      while (true) {
+        boolean changed = handleEvents(watchService.take());
+
+        // collect further changes before regenerating
+        WatchKey key;
+        while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= handleEvents(key);
+        }
+
+        if (changed) {
+          generate(watchService);
+        }
+      }
+    }
+  }
+
+  private void generate(WatchService watchService) throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      CLI.run(schema, targetFolder, options);
+      log.info("Generated model for " + schema + " in " + (System.currentTimeMillis() - start) + "ms");
+    } catch (Exception e) {
+      // keep watching, the schema may be fixed with the next change
+      log.error("Generating model for " + schema + " failed", e);
+    }
+
+    // imports may have changed
+    Set<Path> files = new HashSet<>();
+    for (URI location : SchemaImports.collect(schema, (location, content) -> {})) {
+      if ("file".equals(location.getScheme())) {
+        files.add(Paths.get(location).toAbsolutePath().normalize());
+      }
+    }
+    watchedFiles = files;
+
+    Set<Path> folders = new HashSet<>();
+    for (Path file : files) {
+      folders.add(file.getParent());
+    }
+    Iterator<Map.Entry<Path, WatchKey>> it = watchedFolders.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Path, WatchKey> entry = it.next();
+      if (!folders.contains(entry.getKey())) {
+        entry.getValue().cancel();
+        it.remove();
+      }
+    }
+    for (Path folder : folders) {
+      if (!watchedFolders.containsKey(folder)) {
+        watchedFolders.put(folder, folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY));
+      }
+    }
+
+    log.info("Watching " + files.size() + " schema files for changes");
+  }
+
+  private boolean handleEvents(WatchKey key) {
+    boolean changed = false;
+    Path folder = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        changed = true;
+      }
+      else if (watchedFiles.contains(folder.resolve((Path) event.context()))) {
+        log.info("Detected change in " + folder.resolve((Path) event.context()));
+        changed = true;
+      }
+    }
+    if (!key.reset()) {
+      watchedFolders.remove(folder);
+    }
+    return changed;
+  }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.generator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+import to.wetransform.hale.codegen.model.xml.ElementWriter;
+import to.wetransform.hale.codegen.model.xml.XmlValues;
+import to.wetransform.hale.codegen.model.xml.XmlWriterContext;
+
+/**
+ * Generates a StAX based writer for each generated model and group class,
+ * that writes model objects directly as XML without creating hale instances
+ * or loading the schema. Elements are written in the order of the
+ * properties in the schema, with the properties of super types first.
+ * Writers for model classes with a declared element are
+ * {@link ElementWriter}s, a generated model writer selects them based on
+ * the class of a model object.
+ */
+class WriterGenerator {
+
+  private final Map<ClassName, ModelClass> classes;
+
+  private final CompanionNames writerNames;
+
+  /**
+   * Create a writer generator.
+   *
+   * @param classes the generated model and group classes
+   */
+  public WriterGenerator(Map<ClassName, ModelClass> classes) {
+    super();
+    this.classes = classes;
+    this.writerNames = new CompanionNames(classes, "Writer");
+  }
+
+  /**
+   * Get the name of the writer class for a model or group class.
+   *
+   * @param className the name of the model or group class
+   * @return the name of the writer class
+   */
+  public ClassName getWriterName(ClassName className) {
+    return writerNames.get(className);
+  }
+
+  /**
+   * Create the writer class for a model or group class.
+   *
+   * @param modelClass the model or group class
+   * @return the Java file of the writer class
+   */
+  public JavaFile createWriter(ModelClass modelClass) {
+    ClassName className = modelClass.getClassName();
+    ClassName writerName = getWriterName(className);
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder(writerName)
+        .addModifiers(Modifier.PUBLIC);
+
+    if (!modelClass.isGroup()) {
+      if (!modelClass.getElements().isEmpty()) {
+        // objects are written as the first element declared with the type
+        QName element = modelClass.getElements().get(0);
+        builder.addSuperinterface(ClassName.get(ElementWriter.class));
+
+        builder.addField(FieldSpec.builder(writerName, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T()", writerName)
+            .build());
+
+        builder.addMethod(MethodSpec.methodBuilder("write")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(XMLStreamWriter.class, "writer")
+            .addParameter(ModelObject.class, "object")
+            .addParameter(XmlWriterContext.class, "context")
+            .addException(XMLStreamException.class)
+            .returns(boolean.class)
+            .addStatement("write(writer, $S, $S, ($T) object, context)", element.getNamespaceURI(),
+                element.getLocalPart(), className)
+            .addStatement("return true")
+            .build());
+      }
+
+      builder.addMethod(MethodSpec.methodBuilder("write")
+          .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+          .addParameter(XMLStreamWriter.class, "writer")
+          .addParameter(String.class, "namespace")
+          .addParameter(String.class, "localName")
+          .addParameter(className, "source")
+          .addParameter(XmlWriterContext.class, "context")
+          .addException(XMLStreamException.class)
+          .addStatement("$T.writeStartElement(writer, namespace, localName)", XmlValues.class)
+          .addStatement("attributes(writer, source)")
+          .addStatement("content(writer, source, context)")
+          .addStatement("writer.writeEndElement()")
+          .build());
+    }
+
+    builder.addMethod(createAttributesMethod(modelClass));
+    builder.addMethod(createContentMethod(modelClass));
+
+    return JavaFile.builder(writerName.packageName(), builder.build()).build();
+  }
+
+  /**
+   * Create the model writer, that writes model objects with the writer of
+   * their class. Writers are looked up with a switch on the name of the model
+   * class.
+   *
+   * @param modelWriterName the name of the model writer class
+   * @param namespacePrefixes the namespaces mapped to their preferred
+   *   prefixes
+   * @return the Java file of the model writer class
+   */
+  public JavaFile createModelWriter(ClassName modelWriterName, Map<String, String> namespacePrefixes) {
+    TypeSpec.Builder builder = TypeSpec.classBuilder(modelWriterName)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ClassName.get(ElementWriter.class));
+
+    SortedMap<String, CodeBlock> writers = new TreeMap<>();
+    for (ModelClass modelClass : classes.values()) {
+      if (!modelClass.isGroup() && !modelClass.getElements().isEmpty()) {
+        writers.put(ModelInfoGenerator.getBinaryName(modelClass.getClassName()),
+            CodeBlock.of("$T.INSTANCE", getWriterName(modelClass.getClassName())));
+      }
+    }
+    String lookup = ModelInfoGenerator.addLookup(builder, "getWriter", ClassName.get(ElementWriter.class), writers);
+
+    // prefixes sorted for a stable output
+    TypeName prefixesType = ParameterizedTypeName.get(Map.class, String.class, String.class);
+    CodeBlock.Builder prefixes = CodeBlock.builder()
+        .addStatement("$T prefixes = new $T<>()", prefixesType, LinkedHashMap.class);
+    for (Entry<String, String> prefix : new TreeMap<>(namespacePrefixes).entrySet()) {
+      if (prefix.getKey() != null && !prefix.getKey().isEmpty() && prefix.getValue() != null
+          && !prefix.getValue().isEmpty()) {
+        prefixes.addStatement("prefixes.put($S, $S)", prefix.getKey(), prefix.getValue());
+      }
+    }
+    prefixes.addStatement("PREFIXES = $T.unmodifiableMap(prefixes)", Collections.class);
+    builder.addField(FieldSpec.builder(prefixesType, "PREFIXES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .build());
+    builder.addStaticBlock(prefixes.build());
+
+    builder.addMethod(MethodSpec.methodBuilder("write")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(XMLStreamWriter.class, "writer")
+        .addParameter(ModelObject.class, "object")
+        .addParameter(XmlWriterContext.class, "context")
+        .addException(XMLStreamException.class)
+        .returns(boolean.class)
+        .addStatement("$T elementWriter = $N(object.getClass().getName())", ElementWriter.class, lookup)
+        .addStatement("return elementWriter != null && elementWriter.write(writer, object, context)")
+        .build());
+
+    builder.addMethod(MethodSpec.methodBuilder("getPrefixes")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(prefixesType)
+        .addStatement("return PREFIXES")
+        .build());
+
+    return JavaFile.builder(modelWriterName.packageName(), builder.build()).build();
+  }
+
+  private MethodSpec createAttributesMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("attributes")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamWriter.class, "writer")
+        .addParameter(modelClass.getClassName(), "source")
+        .addException(XMLStreamException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.attributes(writer, source)", getWriterName(modelClass.getSuperclass()));
+    }
+
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.isAttribute()) {
+        CodeBlock write = CodeBlock.of("$T.writeAttribute(writer, $S, $S, value)", XmlValues.class,
+            property.getName().getNamespaceURI(), property.getName().getLocalPart());
+        addForEachValue(method, property, write);
+      }
+      else if (property.getKind() == ModelProperty.Kind.GROUP
+          && classes.get(property.getType()).hasAttributes(classes)) {
+        // attributes may be part of groups
+        CodeBlock write = CodeBlock.of("$T.attributes(writer, value)",
+            getWriterName((ClassName) property.getType()));
+        addForEachValue(method, property, write);
+      }
+    }
+
+    return method.build();
+  }
+
+  private MethodSpec createContentMethod(ModelClass modelClass) {
+    MethodSpec.Builder method = MethodSpec.methodBuilder("content")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(XMLStreamWriter.class, "writer")
+        .addParameter(modelClass.getClassName(), "source")
+        .addParameter(XmlWriterContext.class, "context")
+        .addException(XMLStreamException.class);
+
+    if (modelClass.getSuperclass() != null) {
+      method.addStatement("$T.content(writer, source, context)", getWriterName(modelClass.getSuperclass()));
+    }
+
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.getKind() == ModelProperty.Kind.VALUE) {
+        //FIXME magic property names 'value' and 'geometry', see Generator
+        if ("geometry".equals(property.getFieldName())) {
+          // the geometry writer takes precedence over the geometry elements
+          method.beginControlFlow("if (source.$L() != null && context.hasGeometryWriter())",
+              property.getGetterName())
+              .addStatement("context.writeGeometry(writer, source.$L())", property.getGetterName())
+              .addStatement("return")
+              .endControlFlow();
+        }
+        else {
+          method.beginControlFlow("if (source.$L() != null)", property.getGetterName())
+              .addStatement("writer.writeCharacters($T.format(source.$L()))", XmlValues.class,
+                  property.getGetterName())
+              .endControlFlow();
+        }
+      }
+    }
+
+    for (ModelProperty property : modelClass.getProperties()) {
+      if (property.getKind() == ModelProperty.Kind.VALUE || property.isAttribute()) {
+        continue;
+      }
+
+      CodeBlock write;
+      switch (property.getKind()) {
+      case SIMPLE:
+        write = CodeBlock.of("$T.writeElement(writer, $S, $S, value)", XmlValues.class,
+            property.getName().getNamespaceURI(), property.getName().getLocalPart());
+        break;
+      case COMPLEX:
+        write = CodeBlock.of("$T.write(writer, $S, $S, value, context)",
+            getWriterName((ClassName) property.getType()), property.getName().getNamespaceURI(),
+            property.getName().getLocalPart());
+        break;
+      default:
+        write = CodeBlock.of("$T.content(writer, value, context)", getWriterName((ClassName) property.getType()));
+      }
+      addForEachValue(method, property, write);
+    }
+
+    return method.build();
+  }
+
+  /**
+   * Add code executed for each value of a property, with the value available
+   * as <code>value</code>. <code>null</code> values of single properties are
+   * omitted.
+   */
+  private void addForEachValue(MethodSpec.Builder method, ModelProperty property, CodeBlock code) {
+    if (property.isMultiple()) {
+      method.beginControlFlow("for ($T value : source.$L())", property.getType(), property.getGetterName());
+    }
+    else {
+      method.beginControlFlow("if (source.$L() != null)", property.getGetterName());
+      method.addStatement("$T value = source.$L()", property.getType(), property.getGetterName());
+    }
+    method.addStatement("$L", code)
+        .endControlFlow();
+  }
+
+}
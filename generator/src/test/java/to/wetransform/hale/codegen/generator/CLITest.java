@@ -15,15 +15,68 @@
 
 package to.wetransform.hale.codegen.generator;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.namespace.QName;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.MutableInstance;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.HasValueFlag;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeIndex;
+
+import to.wetransform.hale.codegen.instances.ConverterRegistry;
+import to.wetransform.hale.codegen.instances.InstanceConverter;
+import to.wetransform.hale.codegen.instances.ParallelConverter;
+import to.wetransform.hale.codegen.model.ModelObject;
+import to.wetransform.hale.codegen.model.binary.BinaryInput;
+import to.wetransform.hale.codegen.model.binary.BinaryOutput;
+import to.wetransform.hale.codegen.model.binary.CodecRegistry;
+import to.wetransform.hale.codegen.model.primitive.DoubleList;
+import to.wetransform.hale.codegen.model.xml.ElementReader;
+import to.wetransform.hale.codegen.model.xml.ElementWriter;
+import to.wetransform.hale.codegen.model.xml.XmlModelReader;
+import to.wetransform.hale.codegen.model.xml.XmlModelWriter;
+import to.wetransform.hale.codegen.model.xml.XmlReaderContext;
+import to.wetransform.hale.codegen.model.xml.XmlWriterContext;
+
 public class CLITest {
 
   private static final boolean DELETE_FILES = false;
@@ -82,4 +135,626 @@ public class CLITest {
     }
   }
 
+  @Test
+  public void testGenerateConverters() throws Exception {
+    Path tempDir = Files.createTempDirectory("classes");
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateConverters(true);
+    CLI.run(getClass().getResource("/simple/city.xsd").toURI(), tempDir.toFile(), options);
+
+    Path packageDir = tempDir.resolve("org/example/www/cities");
+    assertTrue(Files.exists(packageDir.resolve("CityType.java")));
+    assertTrue(Files.exists(packageDir.resolve("CityTypeConverter.java")));
+
+    deleteFiles(tempDir);
+  }
+
+  @Test
+  public void testGenerateIncremental() throws Exception {
+    Path tempDir = Files.createTempDirectory("classes");
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setIncremental(true);
+    CLI.run(getClass().getResource("/simple/city.xsd").toURI(), tempDir.toFile(), options);
+
+    Path cityClass = tempDir.resolve("org/example/www/cities/CityType.java");
+    assertTrue(Files.exists(tempDir.resolve(IncrementalWriter.MANIFEST_NAME)));
+    long modified = Files.getLastModifiedTime(cityClass).toMillis();
+
+    // unchanged files are not written again
+    Files.setLastModifiedTime(cityClass, FileTime.fromMillis(modified - 10000));
+    CLI.run(getClass().getResource("/simple/city.xsd").toURI(), tempDir.toFile(), options);
+    assertEquals(modified - 10000, Files.getLastModifiedTime(cityClass).toMillis());
+
+    deleteFiles(tempDir);
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    Path schemaDir = Files.createTempDirectory("schemas");
+    Path schema = schemaDir.resolve("city.xsd");
+    Files.copy(Paths.get(getClass().getResource("/simple/city.xsd").toURI()), schema);
+    Path tempDir = Files.createTempDirectory("classes");
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setIncremental(true);
+    SchemaWatcher watcher = new SchemaWatcher(schema.toUri(), tempDir.toFile(), options);
+    Thread thread = new Thread(() -> {
+      try {
+        watcher.watch();
+      } catch (InterruptedException e) {
+        // stopped
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    thread.start();
+    try {
+      // initial generation
+      Path packageDir = tempDir.resolve("org/example/www/cities");
+      assertTrue(waitFor(packageDir.resolve("CityType.java")));
+
+      // regeneration after adding a type to the schema
+      String content = new String(Files.readAllBytes(schema), StandardCharsets.UTF_8);
+      content = content.replace("</schema>", "<element name=\"Town\" type=\"tns:TownType\"></element>"
+          + "<complexType name=\"TownType\"><sequence><element name=\"mayor\" type=\"string\"></element>"
+          + "</sequence></complexType></schema>");
+      Files.write(schema, content.getBytes(StandardCharsets.UTF_8));
+      assertTrue(waitFor(packageDir.resolve("TownType.java")));
+      assertTrue(Files.exists(packageDir.resolve("CityType.java")));
+    } finally {
+      thread.interrupt();
+      thread.join(10000);
+    }
+
+    deleteFiles(tempDir);
+    deleteFiles(schemaDir);
+  }
+
+  private static boolean waitFor(Path file) throws InterruptedException {
+    long end = System.currentTimeMillis() + 60000;
+    while (!Files.exists(file)) {
+      if (System.currentTimeMillis() > end) {
+        return false;
+      }
+      Thread.sleep(100);
+    }
+    return true;
+  }
+
+  @Test
+  public void testIncrementalManifest() throws Exception {
+    Path tempDir = Files.createTempDirectory("classes");
+
+    // paths that are not Latin-1 or contain characters special to properties files
+    List<GeneratedFile> files = Arrays.asList(
+        new GeneratedFile("org/example/Straße.java", "org.example.Straße", "a".getBytes(StandardCharsets.UTF_8)),
+        new GeneratedFile("org/example/Дорога.java", "org.example.Дорога", "b".getBytes(StandardCharsets.UTF_8)),
+        new GeneratedFile("org/example/a=b:c.java", "org.example.a", "c".getBytes(StandardCharsets.UTF_8)));
+
+    IncrementalWriter writer = new IncrementalWriter(tempDir.toFile());
+    writer.write(files, false);
+    assertEquals(3, writer.getWritten());
+
+    writer = new IncrementalWriter(tempDir.toFile());
+    writer.write(files.subList(0, 2), false);
+    assertEquals(0, writer.getWritten());
+    assertEquals(2, writer.getUnchanged());
+    assertEquals(1, writer.getDeleted());
+    assertTrue(Files.exists(tempDir.resolve("org/example/Дорога.java")));
+
+    // entries pointing outside of the target folder are never deleted
+    Path outside = Files.createTempFile("outside", ".java");
+    Path manifest = tempDir.resolve(IncrementalWriter.MANIFEST_NAME);
+    List<String> lines = new ArrayList<>(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+    lines.add("0000 " + tempDir.relativize(outside).toString().replace('\\', '/'));
+    lines.add("0000 " + outside.toAbsolutePath());
+    Files.write(manifest, lines, StandardCharsets.UTF_8);
+    writer = new IncrementalWriter(tempDir.toFile());
+    writer.write(files.subList(0, 2), false);
+    assertEquals(0, writer.getDeleted());
+    assertTrue(Files.exists(outside));
+
+    Files.delete(outside);
+    deleteFiles(tempDir);
+  }
+
+  private static void assertSameFiles(Path expected, Path actual) throws IOException {
+    List<Path> expectedFiles = listFiles(expected);
+    assertEquals(expectedFiles, listFiles(actual));
+    for (Path file : expectedFiles) {
+      assertArrayEquals(file.toString(), Files.readAllBytes(expected.resolve(file)),
+          Files.readAllBytes(actual.resolve(file)));
+    }
+  }
+
+  private static List<Path> listFiles(Path folder) throws IOException {
+    try (Stream<Path> files = Files.walk(folder)) {
+      return files.filter(Files::isRegularFile).map(folder::relativize).sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static void deleteFiles(Path tempDir) throws IOException {
+    if (DELETE_FILES) {
+      Files.walkFileTree(tempDir, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          Files.delete(file);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+          Files.delete(dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+      });
+    } else {
+      System.out.println(tempDir.toAbsolutePath().toString());
+    }
+  }
+
+  @Test
+  public void testSchemaCache() throws Exception {
+    URI schema = getClass().getResource("/simple/city.xsd").toURI();
+    Path cacheDir = Files.createTempDirectory("schemas");
+    GeneratorOptions options = new GeneratorOptions();
+    options.setSchemaCache(cacheDir.toFile());
+
+    Path uncachedDir = Files.createTempDirectory("classes");
+    CLI.run(schema, uncachedDir.toFile());
+
+    // first run populates the cache, the second one uses it
+    options.setProfile(new GenerationProfile());
+    Path populatedDir = Files.createTempDirectory("classes");
+    CLI.run(schema, populatedDir.toFile(), options);
+    assertEquals(0, options.getProfile().getSchemaCacheHits());
+    assertEquals(1, options.getProfile().getSchemaCacheMisses());
+    try (Stream<Path> entries = Files.list(cacheDir)) {
+      assertEquals(1, entries.count());
+    }
+
+    options.setProfile(new GenerationProfile());
+    Path cachedDir = Files.createTempDirectory("classes");
+    CLI.run(schema, cachedDir.toFile(), options);
+    assertEquals(1, options.getProfile().getSchemaCacheHits());
+    assertEquals(0, options.getProfile().getSchemaCacheMisses());
+
+    assertSameFiles(uncachedDir, cachedDir);
+
+    // primitive fields depend on the nillable flag of the properties
+    URI measurements = getClass().getResource("/simple/measurements.xsd").toURI();
+    GeneratorOptions primitiveOptions = new GeneratorOptions();
+    primitiveOptions.setPrimitiveFields(true);
+    Path primitiveDir = Files.createTempDirectory("classes");
+    CLI.run(measurements, primitiveDir.toFile(), primitiveOptions);
+
+    primitiveOptions.setSchemaCache(cacheDir.toFile());
+    Path primitivePopulatedDir = Files.createTempDirectory("classes");
+    CLI.run(measurements, primitivePopulatedDir.toFile(), primitiveOptions);
+    Path primitiveCachedDir = Files.createTempDirectory("classes");
+    CLI.run(measurements, primitiveCachedDir.toFile(), primitiveOptions);
+
+    assertSameFiles(primitiveDir, primitiveCachedDir);
+
+    deleteFiles(cacheDir);
+    deleteFiles(uncachedDir);
+    deleteFiles(populatedDir);
+    deleteFiles(cachedDir);
+    deleteFiles(primitiveDir);
+    deleteFiles(primitivePopulatedDir);
+    deleteFiles(primitiveCachedDir);
+  }
+
+  @Test
+  public void testCompileInMemory() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateConverters(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+
+    Class<?> cityClass = model.getModelInfo().getModelClass(new QName("http://www.example.org/cities", "CityType"));
+    assertNotNull(cityClass);
+    assertEquals("org.example.www.cities.CityType", cityClass.getName());
+    assertSame(model.getClassLoader(), cityClass.getClassLoader());
+    assertNull(model.getModelInfo().getModelClass(new QName("http://www.example.org/cities", "Unknown")));
+    assertNull(model.getModelInfo().getModelClass(new QName("http://www.example.org/unknown", "CityType")));
+
+    ConverterRegistry registry = (ConverterRegistry) model.getModelInfo();
+    assertNotNull(registry.getConverter(cityClass));
+  }
+
+  @Test
+  public void testParallelConversion() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateConverters(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+
+    TypeDefinition cityType = null;
+    for (TypeDefinition type : schema.getTypes()) {
+      if (type.getName().equals(new QName("http://www.example.org/cities", "CityType"))) {
+        cityType = type;
+      }
+    }
+    assertNotNull(cityType);
+
+    int count = 1000;
+    List<Instance> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      MutableInstance instance = new DefaultInstance(cityType, null);
+      instance.addProperty(new QName("id"), String.valueOf(i));
+      instances.add(instance);
+    }
+    InstanceCollection collection = new DefaultInstanceCollection(instances);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ParallelConverter converter = new ParallelConverter(
+          new InstanceConverter((ConverterRegistry) model.getModelInfo()), executor);
+      converter.setBatchSize(7);
+      converter.setMaxBatchesInFlight(3);
+
+      // ordered conversion keeps the input order
+      List<String> ids = new ArrayList<>();
+      converter.convert(collection, model.getModelInfo(), object -> ids.add(getId(object)));
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        expected.add(String.valueOf(i));
+      }
+      assertEquals(expected, ids);
+
+      // unordered conversion is complete
+      ids.clear();
+      converter.setOrdered(false);
+      converter.convert(collection, model.getModelInfo(), object -> ids.add(getId(object)));
+      assertEquals(count, ids.size());
+      assertEquals(new HashSet<>(expected), new HashSet<>(ids));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String getId(Object object) {
+    try {
+      return (String) invoke(object, "getId");
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Test
+  public void testGenerateXmlReader() throws Exception {
+    Path tempDir = Files.createTempDirectory("classes");
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateXmlReader(true);
+    CLI.run(getClass().getResource("/simple/city.xsd").toURI(), tempDir.toFile(), options);
+
+    assertTrue(Files.exists(tempDir.resolve("org/example/www/cities/CityTypeReader.java")));
+    assertTrue(Files.exists(tempDir.resolve(Generator.MODEL_READER_CLASS_NAME + ".java")));
+
+    deleteFiles(tempDir);
+  }
+
+  @Test
+  public void testReadXml() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateXmlReader(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+    ElementReader elementReader = (ElementReader) model.getClassLoader()
+        .loadClass(Generator.MODEL_READER_CLASS_NAME).newInstance();
+
+    // whole document
+    List<ModelObject> objects = new ArrayList<>();
+    try (XmlModelReader reader = new XmlModelReader(getClass().getResourceAsStream("/simple/city.xml"),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+    assertEquals(1, objects.size());
+    assertEquals("org.example.www.cities.CollectionType", objects.get(0).getClass().getName());
+
+    // single city
+    String xml = "<tns:City xmlns:tns=\"http://www.example.org/cities\" id=\"1\">"
+        + "<name language=\"en\">Munich</name><name language=\"it\">Monaco</name>"
+        + "<unknown><name>ignored</name></unknown>"
+        + "<location lat=\"48.137222\" lon=\"11.575556\"/></tns:City>";
+    objects.clear();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+    assertEquals(1, objects.size());
+    Object city = objects.get(0);
+    assertEquals("1", invoke(city, "getId"));
+    List<?> names = (List<?>) invoke(city, "getName");
+    assertEquals(2, names.size());
+    assertEquals("Munich", invoke(names.get(0), "getValue"));
+    assertEquals("en", invoke(names.get(0), "getLanguage"));
+    assertEquals("it", invoke(names.get(1), "getLanguage"));
+    Object location = invoke(city, "getLocation");
+    assertEquals(48.137222, (Double) invoke(location, "getLat"), 0.0);
+    assertEquals(11.575556, (Double) invoke(location, "getLon"), 0.0);
+  }
+
+  @Test
+  public void testWriteXml() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateXmlReader(true);
+    options.setGenerateXmlWriter(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+    ElementReader elementReader = (ElementReader) model.getClassLoader()
+        .loadClass(Generator.MODEL_READER_CLASS_NAME).newInstance();
+    ElementWriter elementWriter = (ElementWriter) model.getClassLoader()
+        .loadClass(Generator.MODEL_WRITER_CLASS_NAME).newInstance();
+
+    String xml = "<tns:City xmlns:tns=\"http://www.example.org/cities\" id=\"1\">"
+        + "<name language=\"en\">Munich</name><name language=\"it\">Monaco</name>"
+        + "<location lat=\"48.137222\" lon=\"11.575556\"/></tns:City>";
+    List<ModelObject> objects = new ArrayList<>();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+
+    // write the city twice
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    QName container = new QName("http://www.example.org/test", "container");
+    try (XmlModelWriter writer = new XmlModelWriter(out, elementWriter, new XmlWriterContext(), container, null)) {
+      writer.write(objects.get(0));
+      writer.write(objects.get(0));
+    }
+    String written = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(written.contains("<name language=\"en\">Munich</name><name language=\"it\">Monaco</name>"));
+    assertTrue(written.contains("<location lat=\"48.137222\" lon=\"11.575556\">"));
+
+    // read the written cities
+    objects.clear();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(out.toByteArray()),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+    assertEquals(2, objects.size());
+    Object city = objects.get(1);
+    assertEquals("1", invoke(city, "getId"));
+    List<?> names = (List<?>) invoke(city, "getName");
+    assertEquals(2, names.size());
+    assertEquals("Monaco", invoke(names.get(1), "getValue"));
+    assertEquals(11.575556, (Double) invoke(invoke(city, "getLocation"), "getLon"), 0.0);
+  }
+
+  @Test
+  public void testBinaryCodec() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setGenerateCodecs(true);
+    options.setGenerateXmlReader(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+    ElementReader elementReader = (ElementReader) model.getClassLoader()
+        .loadClass(Generator.MODEL_READER_CLASS_NAME).newInstance();
+    CodecRegistry codecs = (CodecRegistry) model.getModelInfo();
+
+    String xml = "<tns:City xmlns:tns=\"http://www.example.org/cities\" id=\"1\">"
+        + "<name language=\"en\">Munich</name><name language=\"it\">Monaco</name>"
+        + "<location lat=\"48.137222\" lon=\"11.575556\"/></tns:City>";
+    List<ModelObject> objects = new ArrayList<>();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+
+    // write the city twice, the second time strings are written as index
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (BinaryOutput output = new BinaryOutput(out, codecs)) {
+      output.writeObject(objects.get(0));
+      output.writeObject(objects.get(0));
+    }
+
+    try (BinaryInput input = new BinaryInput(new ByteArrayInputStream(out.toByteArray()), codecs)) {
+      input.readObject();
+      Object city = input.readObject();
+      assertEquals(objects.get(0).getClass(), city.getClass());
+      assertEquals("1", invoke(city, "getId"));
+      List<?> names = (List<?>) invoke(city, "getName");
+      assertEquals(2, names.size());
+      assertEquals("Monaco", invoke(names.get(1), "getValue"));
+      assertEquals("it", invoke(names.get(1), "getLanguage"));
+      assertEquals(48.137222, (Double) invoke(invoke(city, "getLocation"), "getLat"), 0.0);
+    }
+  }
+
+  @Test
+  public void testPrimitiveFields() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/city.xsd").toURI());
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setPrimitiveFields(true);
+    options.setGenerateCodecs(true);
+    options.setGenerateXmlReader(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+    ElementReader elementReader = (ElementReader) model.getClassLoader()
+        .loadClass(Generator.MODEL_READER_CLASS_NAME).newInstance();
+    CodecRegistry codecs = (CodecRegistry) model.getModelInfo();
+
+    String xml = "<tns:City xmlns:tns=\"http://www.example.org/cities\" id=\"1\">"
+        + "<name>Munich</name><location lat=\"48.137222\" lon=\"11.575556\"/></tns:City>";
+    List<ModelObject> objects = new ArrayList<>();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+
+    Object location = invoke(objects.get(0), "getLocation");
+    assertEquals(double.class, location.getClass().getDeclaredField("lat").getType());
+    assertEquals(48.137222, (Double) invoke(location, "getLat"), 0.0);
+    assertTrue((Boolean) invoke(location, "hasLat"));
+
+    // absent value
+    location.getClass().getMethod("setLon", Double.class).invoke(location, (Double) null);
+    assertNull(invoke(location, "getLon"));
+    assertEquals(Boolean.FALSE, invoke(location, "hasLon"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (BinaryOutput output = new BinaryOutput(out, codecs)) {
+      output.writeObject(objects.get(0));
+    }
+    try (BinaryInput input = new BinaryInput(new ByteArrayInputStream(out.toByteArray()), codecs)) {
+      Object copy = invoke(input.readObject(), "getLocation");
+      assertEquals(48.137222, (Double) invoke(copy, "getLat"), 0.0);
+      assertNull(invoke(copy, "getLon"));
+    }
+  }
+
+  @Test
+  public void testPrimitiveFieldsConversion() throws Exception {
+    SchemaModel schema = CLI.loadSchema(getClass().getResource("/simple/measurements.xsd").toURI());
+    String ns = "http://www.example.org/measurements";
+
+    GeneratorOptions options = new GeneratorOptions();
+    options.setPrimitiveFields(true);
+    options.setGenerateConverters(true);
+    options.setGenerateXmlReader(true);
+    Generator generator = new Generator(schema.getPrefixes(), schema.getNamespace(), options);
+    CompiledModel model = generator.compileModel(schema.getTypes(), getClass().getClassLoader());
+    ElementReader elementReader = (ElementReader) model.getClassLoader()
+        .loadClass(Generator.MODEL_READER_CLASS_NAME).newInstance();
+
+    String xml = "<tns:Station xmlns:tns=\"" + ns + "\" "
+        + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" id=\"s1\">"
+        + "<elevation>512.5</elevation><reading>1.5</reading><reading>2.5</reading>"
+        + "<count>3</count><count xsi:nil=\"true\"/></tns:Station>";
+    List<ModelObject> objects = new ArrayList<>();
+    try (XmlModelReader reader = new XmlModelReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        elementReader, new XmlReaderContext())) {
+      reader.forEachRemaining(objects::add);
+    }
+    ModelObject station = objects.get(0);
+
+    // repeated numeric values in a primitive list, nillable ones in a list supporting nil
+    assertEquals(DoubleList.class, invoke(station, "getReading").getClass());
+    assertEquals(Arrays.asList(1.5, 2.5), invoke(station, "getReading"));
+    assertEquals(Arrays.asList(3, null), invoke(station, "getCount"));
+    assertEquals(512.5, (Double) invoke(station, "getElevation"), 0.0);
+    assertNull(invoke(station, "getActive"));
+    ((List<?>) invoke(station, "getCount")).remove(1);
+
+    TypeDefinition stationType = null;
+    DefaultTypeIndex index = new DefaultTypeIndex();
+    for (TypeDefinition type : schema.getTypes()) {
+      index.addType(type);
+      if (type.getName().equals(new QName(ns, "StationType"))) {
+        stationType = type;
+      }
+    }
+    assertNotNull(stationType);
+
+    // reflective and generated conversion in both directions
+    for (InstanceConverter converter : Arrays.asList(new InstanceConverter(),
+        new InstanceConverter((ConverterRegistry) model.getModelInfo()))) {
+      Instance instance = converter.convert(station, index);
+      assertEquals(stationType, instance.getDefinition());
+      assertNull(instance.getProperty(new QName("active")));
+      assertEquals(2, instance.getProperty(new QName("reading")).length);
+
+      ModelObject copy = converter.convert(instance, station.getClass());
+      assertEquals(512.5, (Double) invoke(copy, "getElevation"), 0.0);
+      assertEquals(Boolean.FALSE, invoke(copy, "hasActive"));
+      assertNull(invoke(copy, "getActive"));
+      assertEquals(DoubleList.class, invoke(copy, "getReading").getClass());
+      assertEquals(Arrays.asList(1.5, 2.5), invoke(copy, "getReading"));
+      assertEquals(Arrays.asList(3), invoke(copy, "getCount"));
+      assertEquals("s1", invoke(copy, "getId"));
+    }
+  }
+
+  private static Object invoke(Object target, String getter) throws Exception {
+    return target.getClass().getMethod(getter).invoke(target);
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    Path tempDir = Files.createTempDirectory("batch");
+    String schema = getClass().getResource("/simple/city.xsd").toURI().toString();
+
+    // schema file with a space in its path
+    Path schemaFolder = Files.createDirectories(tempDir.resolve("my schemas"));
+    Files.copy(Paths.get(getClass().getResource("/simple/city.xsd").toURI()), schemaFolder.resolve("city.xsd"));
+
+    Path manifest = tempDir.resolve("schemas.txt");
+    Files.write(manifest, Arrays.asList(
+        "# schema and target folder",
+        schema + " first",
+        schema + "\tsecond",
+        "\"my schemas/city.xsd\" \"third folder\""), StandardCharsets.UTF_8);
+
+    CLI.main(new String[] { "--threads", "2", "--batch", manifest.toString() });
+
+    assertTrue(Files.exists(tempDir.resolve("first/org/example/www/cities/CityType.java")));
+    assertTrue(Files.exists(tempDir.resolve("second/org/example/www/cities/CityType.java")));
+    assertTrue(Files.exists(tempDir.resolve("third folder/org/example/www/cities/CityType.java")));
+
+    deleteFiles(tempDir);
+  }
+
+  @Test
+  public void testProfile() throws Exception {
+    Path tempDir = Files.createTempDirectory("classes");
+
+    GenerationProfile profile = new GenerationProfile();
+    GeneratorOptions options = new GeneratorOptions();
+    options.setProfile(profile);
+    CLI.run(getClass().getResource("/simple/city.xsd").toURI(), tempDir.toFile(), options);
+
+    assertTrue(profile.getTypeClassCount() > 0);
+    assertTrue(profile.getBytesWritten() > 0);
+    assertTrue(profile.getPhaseNanos(GenerationProfile.PHASE_SCHEMA_LOADING) > 0);
+    assertTrue(profile.toJson().contains("\"largestClasses\""));
+
+    deleteFiles(tempDir);
+  }
+
+  @Test
+  public void testDeepTypeGraph() throws Exception {
+    // chain of types each referencing the next one through a property
+    String ns = "http://www.example.org/deep";
+    int depth = 5000;
+    DefaultTypeDefinition[] types = new DefaultTypeDefinition[depth];
+    for (int i = 0; i < depth; i++) {
+      types[i] = new DefaultTypeDefinition(new QName(ns, "Type" + i));
+      types[i].setConstraint(HasValueFlag.DISABLED);
+    }
+    DefaultTypeDefinition stringType = new DefaultTypeDefinition(new QName(ns, "StringType"));
+    stringType.setConstraint(HasValueFlag.ENABLED);
+    stringType.setConstraint(Binding.get(String.class));
+    for (int i = 0; i < depth; i++) {
+      TypeDefinition propertyType = (i + 1 < depth) ? (types[i + 1]) : (stringType);
+      DefaultPropertyDefinition property = new DefaultPropertyDefinition(new QName(ns, "next"), types[i],
+          propertyType);
+      property.setConstraint(Cardinality.get(0, 1));
+    }
+
+    Path tempDir = Files.createTempDirectory("classes");
+    new Generator(Collections.singletonMap(ns, "deep"), ns).generateModel(
+        Collections.singletonList(types[0]), tempDir.toFile());
+
+    assertTrue(Files.exists(tempDir.resolve("org/example/www/deep/Type" + (depth - 1) + ".java")));
+
+    deleteFiles(tempDir);
+  }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+/**
+ * Listener notified by an {@link InstanceConverter} about conversions, e.g.
+ * for collecting metrics. All methods have empty default implementations.
+ * Listeners are called from the converting threads and must be thread-safe
+ * if a converter is used concurrently.
+ *
+ * @see ConversionMetrics
+ */
+public interface ConversionListener {
+
+  /**
+   * Direction of a conversion.
+   */
+  enum Direction {
+    /**
+     * Conversion of instances to model objects.
+     */
+    TO_MODEL,
+    /**
+     * Conversion of model objects to instances.
+     */
+    TO_INSTANCE
+  }
+
+  /**
+   * Called when a model object or group object was converted, including
+   * objects nested in other objects.
+   *
+   * @param modelClass the model or group class
+   * @param direction the direction of the conversion
+   * @param values the number of property values transferred
+   * @param depth the nesting depth, <code>1</code> for a top-level object
+   */
+  default void objectConverted(Class<?> modelClass, Direction direction, int values, int depth) {
+    // do nothing
+  }
+
+  /**
+   * Called when the conversion of a top-level object including all nested
+   * objects is completed.
+   *
+   * @param modelClass the model class
+   * @param direction the direction of the conversion
+   * @param nanos the duration of the conversion in nanoseconds
+   */
+  default void conversionCompleted(Class<?> modelClass, Direction direction, long nanos) {
+    // do nothing
+  }
+
+  /**
+   * Called when the conversion of a top-level object failed.
+   *
+   * @param modelClass the model class, <code>null</code> if it could not be
+   *   determined
+   * @param direction the direction of the conversion
+   * @param error the error
+   */
+  default void conversionFailed(Class<?> modelClass, Direction direction, Throwable error) {
+    // do nothing
+  }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe in-memory collector of conversion metrics: number of objects
+ * and property values converted per class, maximum nesting depth, failures
+ * and a histogram of the durations of top-level conversions.
+ *
+ * Durations are recorded in buckets of powers of two nanoseconds.
+ */
+public class ConversionMetrics implements ConversionListener {
+
+  private static final int BUCKETS = 64;
+
+  private static class ClassMetrics {
+
+    private final LongAdder objects = new LongAdder();
+    private final LongAdder values = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+  }
+
+  private static class DirectionMetrics {
+
+    private final ConcurrentMap<Class<?>, ClassMetrics> classes = new ConcurrentHashMap<>();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder conversions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLongArray durations = new AtomicLongArray(BUCKETS);
+
+    private ClassMetrics getClassMetrics(Class<?> modelClass) {
+      ClassMetrics metrics = classes.get(modelClass);
+      if (metrics == null) {
+        metrics = classes.computeIfAbsent(modelClass, c -> new ClassMetrics());
+      }
+      return metrics;
+    }
+
+  }
+
+  private final DirectionMetrics[] directions;
+
+  /**
+   * Create a new metrics collector.
+   */
+  public ConversionMetrics() {
+    super();
+    directions = new DirectionMetrics[Direction.values().length];
+    for (int i = 0; i < directions.length; i++) {
+      directions[i] = new DirectionMetrics();
+    }
+  }
+
+  @Override
+  public void objectConverted(Class<?> modelClass, Direction direction, int values, int depth) {
+    DirectionMetrics metrics = directions[direction.ordinal()];
+    ClassMetrics classMetrics = metrics.getClassMetrics(modelClass);
+    classMetrics.objects.increment();
+    classMetrics.values.add(values);
+    metrics.maxDepth.accumulate(depth);
+  }
+
+  @Override
+  public void conversionCompleted(Class<?> modelClass, Direction direction, long nanos) {
+    DirectionMetrics metrics = directions[direction.ordinal()];
+    metrics.conversions.increment();
+    metrics.totalNanos.add(nanos);
+    metrics.durations.incrementAndGet(getBucket(nanos));
+  }
+
+  @Override
+  public void conversionFailed(Class<?> modelClass, Direction direction, Throwable error) {
+    DirectionMetrics metrics = directions[direction.ordinal()];
+    metrics.failures.increment();
+    if (modelClass != null) {
+      metrics.getClassMetrics(modelClass).failures.increment();
+    }
+  }
+
+  /**
+   * Get the number of converted objects of a class.
+   *
+   * @param modelClass the model or group class
+   * @param direction the direction of the conversion
+   * @return the number of converted objects, including nested objects
+   */
+  public long getObjectCount(Class<?> modelClass, Direction direction) {
+    ClassMetrics metrics = directions[direction.ordinal()].classes.get(modelClass);
+    return (metrics == null) ? (0) : (metrics.objects.sum());
+  }
+
+  /**
+   * Get the number of property values converted for objects of a class.
+   *
+   * @param modelClass the model or group class
+   * @param direction the direction of the conversion
+   * @return the number of property values
+   */
+  public long getValueCount(Class<?> modelClass, Direction direction) {
+    ClassMetrics metrics = directions[direction.ordinal()].classes.get(modelClass);
+    return (metrics == null) ? (0) : (metrics.values.sum());
+  }
+
+  /**
+   * @param direction the direction of the conversion
+   * @return the number of completed top-level conversions
+   */
+  public long getConversionCount(Direction direction) {
+    return directions[direction.ordinal()].conversions.sum();
+  }
+
+  /**
+   * @param direction the direction of the conversion
+   * @return the number of failed top-level conversions
+   */
+  public long getFailureCount(Direction direction) {
+    return directions[direction.ordinal()].failures.sum();
+  }
+
+  /**
+   * @param direction the direction of the conversion
+   * @return the maximum nesting depth of converted objects
+   */
+  public int getMaxDepth(Direction direction) {
+    return (int) directions[direction.ordinal()].maxDepth.get();
+  }
+
+  /**
+   * Get the histogram of the durations of top-level conversions. The value
+   * at index <code>i</code> is the number of conversions that took at least
+   * <code>2^i</code> and less than <code>2^(i+1)</code> nanoseconds, index
+   * <code>0</code> also includes conversions that took no measurable time.
+   *
+   * @param direction the direction of the conversion
+   * @return the histogram
+   */
+  public long[] getDurationHistogram(Direction direction) {
+    AtomicLongArray durations = directions[direction.ordinal()].durations;
+    long[] result = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      result[i] = durations.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Create a human readable summary of the collected metrics.
+   *
+   * @return the summary
+   */
+  public String summary() {
+    StringBuilder result = new StringBuilder();
+    for (Direction direction : Direction.values()) {
+      DirectionMetrics metrics = directions[direction.ordinal()];
+      long conversions = metrics.conversions.sum();
+      if (conversions == 0 && metrics.failures.sum() == 0) {
+        continue;
+      }
+
+      result.append(direction).append(": ").append(conversions).append(" conversions, ")
+          .append(metrics.failures.sum()).append(" failures, max depth ")
+          .append(metrics.maxDepth.get());
+      if (conversions > 0) {
+        result.append(", mean ")
+            .append(TimeUnit.NANOSECONDS.toMicros(metrics.totalNanos.sum() / conversions)).append("µs");
+      }
+      result.append('\n');
+
+      result.append("  durations:\n");
+      for (int i = 0; i < BUCKETS; i++) {
+        long count = metrics.durations.get(i);
+        if (count > 0) {
+          result.append("    < ").append(formatNanos(1L << Math.min(i + 1, 62))).append(": ")
+              .append(count).append('\n');
+        }
+      }
+
+      result.append("  classes (objects / values / failures):\n");
+      List<Map.Entry<Class<?>, ClassMetrics>> classes = new ArrayList<>(metrics.classes.entrySet());
+      classes.sort(Comparator.comparing((Map.Entry<Class<?>, ClassMetrics> e) -> e.getValue().objects.sum())
+          .reversed());
+      for (Map.Entry<Class<?>, ClassMetrics> entry : classes) {
+        result.append("    ").append(entry.getKey().getName()).append(": ")
+            .append(entry.getValue().objects.sum()).append(" / ")
+            .append(entry.getValue().values.sum()).append(" / ")
+            .append(entry.getValue().failures.sum()).append('\n');
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Reset all metrics. Conversions running concurrently may be partially
+   * included afterwards.
+   */
+  public void reset() {
+    for (DirectionMetrics metrics : directions) {
+      metrics.classes.clear();
+      metrics.maxDepth.reset();
+      metrics.conversions.reset();
+      metrics.totalNanos.reset();
+      metrics.failures.reset();
+      for (int i = 0; i < BUCKETS; i++) {
+        metrics.durations.set(i, 0);
+      }
+    }
+  }
+
+  private static int getBucket(long nanos) {
+    if (nanos <= 1) {
+      return 0;
+    }
+    return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+  }
+
+  private static String formatNanos(long nanos) {
+    if (nanos < 10_000L) {
+      return nanos + "ns";
+    }
+    if (nanos < 10_000_000L) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos) + "µs";
+    }
+    return TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import to.wetransform.hale.codegen.model.Named;
+import to.wetransform.hale.codegen.model.Value;
+
+/**
+ * Pre-resolved information on how to convert objects of a model class. A plan
+ * is created once per class so that no annotation lookups or reflective
+ * accesses are needed during conversion. Plans are immutable and may be
+ * shared between threads.
+ */
+final class ConversionPlan {
+
+  private final Class<?> type;
+  private final QName name;
+  private final MethodHandle constructor;
+  private final List<PropertyPlan> properties;
+
+  private ConversionPlan(Class<?> type, QName name, MethodHandle constructor,
+      List<PropertyPlan> properties) {
+    super();
+    this.type = type;
+    this.name = name;
+    this.constructor = constructor;
+    this.properties = Collections.unmodifiableList(properties);
+  }
+
+  /**
+   * Create a conversion plan for the given class.
+   *
+   * @param clazz the model or group class
+   * @param superPlan the plan of the super class, may be <code>null</code>
+   * @return the conversion plan
+   */
+  public static ConversionPlan create(Class<?> clazz, ConversionPlan superPlan) {
+    // type name
+    QName name = null;
+    Named named = clazz.getAnnotation(Named.class);
+    if (named != null) {
+      name = new QName(named.namespace(), named.value());
+    }
+
+    // default constructor
+    MethodHandle constructor;
+    try {
+      Constructor<?> defaultConstructor = clazz.getDeclaredConstructor();
+      defaultConstructor.setAccessible(true);
+      constructor = MethodHandles.lookup().unreflectConstructor(defaultConstructor)
+          .asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      // class cannot be instantiated
+      constructor = null;
+    }
+
+    // collect fields
+    List<PropertyPlan> properties = new ArrayList<>();
+
+    // super class fields
+    if (superPlan != null) {
+      properties.addAll(superPlan.getProperties());
+    }
+
+    // declared fields
+    for (Field field : clazz.getDeclaredFields()) {
+      if (field.isAnnotationPresent(Named.class) || field.isAnnotationPresent(Value.class)) {
+        // only add if it's a Named or Value field
+        properties.add(PropertyPlan.create(field));
+      }
+    }
+
+    return new ConversionPlan(clazz, name, constructor, properties);
+  }
+
+  /**
+   * @return the class the plan applies to
+   */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @return the qualified type name, <code>null</code> if the class has no
+   *   name annotation
+   */
+  public QName getName() {
+    return name;
+  }
+
+  /**
+   * @return the plans for all properties including those of super classes
+   */
+  public List<PropertyPlan> getProperties() {
+    return properties;
+  }
+
+  /**
+   * Create a new object of the class.
+   *
+   * @return the new object
+   * @throws InstantiationException if the object cannot be created
+   */
+  public Object newInstance() throws InstantiationException {
+    if (constructor == null) {
+      throw new InstantiationException("No default constructor for " + type.getName());
+    }
+    try {
+      return (Object) constructor.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      InstantiationException ie = new InstantiationException("Failed to create object of " + type.getName());
+      ie.initCause(e);
+      throw ie;
+    }
+  }
+
+}
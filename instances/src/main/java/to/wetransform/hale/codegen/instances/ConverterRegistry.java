@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+/**
+ * Provides {@link ModelConverter}s for model and group classes.
+ */
+public interface ConverterRegistry {
+
+  /**
+   * Get the converter for the given model or group class.
+   *
+   * @param modelClass the model or group class
+   * @return the converter or <code>null</code> if none is available for the
+   *   class
+   */
+  <T> ModelConverter<T> getConverter(Class<T> modelClass);
+
+}
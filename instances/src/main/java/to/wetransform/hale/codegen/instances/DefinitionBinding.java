@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.QName;
+
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.DefinitionGroup;
+
+/**
+ * Caches the child definitions of a type or group definition that have been
+ * resolved by name, so that populating many instances of the same type only
+ * resolves each child definition once.
+ */
+final class DefinitionBinding {
+
+  private final DefinitionGroup definition;
+
+  private final ConcurrentMap<QName, ChildDefinition<?>> children = new ConcurrentHashMap<>();
+
+  public DefinitionBinding(DefinitionGroup definition) {
+    super();
+    this.definition = definition;
+  }
+
+  /**
+   * @return the type or group definition
+   */
+  public DefinitionGroup getDefinition() {
+    return definition;
+  }
+
+  /**
+   * Get the child definition with the given name.
+   *
+   * @param name the child name
+   * @return the child definition or <code>null</code> if there is no child
+   *   with that name
+   */
+  public ChildDefinition<?> getChild(QName name) {
+    ChildDefinition<?> child = children.get(name);
+    if (child == null) {
+      child = definition.getChild(name);
+      if (child != null) {
+        children.putIfAbsent(name, child);
+      }
+    }
+    return child;
+  }
+
+}
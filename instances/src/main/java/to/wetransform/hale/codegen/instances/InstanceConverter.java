@@ -15,15 +15,14 @@
 
 package to.wetransform.hale.codegen.instances;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.namespace.QName;
 
@@ -37,59 +36,207 @@ import eu.esdihumboldt.hale.common.instance.model.MutableInstance;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.impl.DefaultGroup;
 import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
-import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.DefinitionGroup;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
 import to.wetransform.hale.codegen.model.ModelInfo;
 import to.wetransform.hale.codegen.model.ModelObject;
-import to.wetransform.hale.codegen.model.Multiple;
-import to.wetransform.hale.codegen.model.Named;
-import to.wetransform.hale.codegen.model.Value;
 
+/**
+ * Converts model objects to and from hale instances.
+ *
+ * A converter is thread-safe and may be shared, the conversion metadata of
+ * model classes is created once per class and shared between threads and
+ * converters. Child definitions resolved while converting model objects to
+ * instances are cached per converter, so a converter should not outlive the
+ * schemas it is used with.
+ *
+ * Simple values can be deduplicated while converting instances to model
+ * objects by configuring a {@link ValueInterner}.
+ */
 public class InstanceConverter {
 
-  private final Map<Class<?>, List<Field>> fieldCache = new HashMap<>();
+  /**
+   * Conversion plans per class. Reading a plan requires no locking, a plan is
+   * created on first access and published once.
+   */
+  private static final ClassValue<ConversionPlan> plans = new ClassValue<ConversionPlan>() {
+
+    @Override
+    protected ConversionPlan computeValue(Class<?> type) {
+      // plan of super class
+      ConversionPlan superPlan = null;
+      if (type.getSuperclass() != null) {
+        superPlan = get(type.getSuperclass());
+      }
+
+      return ConversionPlan.create(type, superPlan);
+    }
+
+  };
+
+  private final ConverterRegistry converters;
+
+  /**
+   * Listener for conversion events, <code>null</code> if conversions are not
+   * instrumented.
+   */
+  private final ConversionListener listener;
+
+  /**
+   * Nesting depth of the current conversion per thread, only used with a
+   * listener.
+   */
+  private final ThreadLocal<int[]> depth;
+
+  /**
+   * Table to deduplicate simple values, <code>null</code> if values are
+   * used as-is.
+   */
+  private final ValueInterner interner;
+
+  /**
+   * Resolved child definitions per type or group definition.
+   */
+  private final ConcurrentMap<DefinitionGroup, DefinitionBinding> bindings = new ConcurrentHashMap<>();
 
   public InstanceConverter() {
+    this(null);
+  }
+
+  /**
+   * Create a converter that uses the given model converters where available
+   * and falls back to converting based on the model annotations otherwise.
+   *
+   * @param converters the registry of model converters, e.g. a generated
+   *   model, may be <code>null</code>
+   */
+  public InstanceConverter(ConverterRegistry converters) {
+    this(converters, null);
+  }
+
+  /**
+   * Create a converter that notifies the given listener about conversions.
+   *
+   * @param converters the registry of model converters, e.g. a generated
+   *   model, may be <code>null</code>
+   * @param listener the conversion listener, e.g. {@link ConversionMetrics},
+   *   may be <code>null</code> for no instrumentation
+   */
+  public InstanceConverter(ConverterRegistry converters, ConversionListener listener) {
+    this(converters, listener, null);
+  }
+
+  /**
+   * Create a converter that deduplicates simple values when converting
+   * instances to model objects.
+   *
+   * @param converters the registry of model converters, e.g. a generated
+   *   model, may be <code>null</code>
+   * @param listener the conversion listener, e.g. {@link ConversionMetrics},
+   *   may be <code>null</code> for no instrumentation
+   * @param interner the table to deduplicate values with, may be shared
+   *   between converters, <code>null</code> to use values as-is
+   */
+  public InstanceConverter(ConverterRegistry converters, ConversionListener listener, ValueInterner interner) {
     super();
 
+    this.converters = converters;
+    this.listener = listener;
+    this.interner = interner;
+    this.depth = (listener == null) ? (null) : (ThreadLocal.withInitial(() -> new int[1]));
+
     // initialize registry
     RegistryFactoryHelper.getRegistry();
   }
 
+  /**
+   * Create an instance collection for the given model objects. The model
+   * objects are converted to instances on demand when the collection is
+   * iterated, e.g. by an instance writer. Conversion errors are reported as
+   * {@link IllegalStateException}s.
+   *
+   * @param objects the model objects to convert
+   * @param schema the schema containing the types of the model objects
+   * @return the instance collection
+   * @throws IllegalArgumentException not thrown, as conversion is deferred
+   * @throws IllegalAccessException not thrown, as conversion is deferred
+   */
   public InstanceCollection convert(Iterable<? extends ModelObject> objects, TypeIndex schema) throws IllegalArgumentException, IllegalAccessException {
-    //XXX improvement: on demand conversion in stream?
-
-    Collection<Instance> instances = new ArrayList<>();
-
-    for (ModelObject obj : objects) {
-      instances.add(convert(obj, schema));
-    }
-
-    return new DefaultInstanceCollection(instances);
+    return new ModelInstanceCollection(objects, schema, this);
   }
 
+  /**
+   * Convert all instances in the given collection to model objects.
+   * All model objects are held in memory, for large collections use
+   * {@link #stream(InstanceCollection, ModelInfo)} or
+   * {@link #iterate(InstanceCollection, ModelInfo)} instead.
+   *
+   * @param instances the instances to convert
+   * @param model the model information
+   * @return the converted model objects
+   * @throws InstantiationException if a model object cannot be created
+   * @throws IllegalAccessException if a model field cannot be accessed
+   */
   public Iterable<? extends ModelObject> convert(InstanceCollection instances, ModelInfo model) throws InstantiationException, IllegalAccessException {
-    //XXX improvement: on demand conversion in stream?
-
     Collection<ModelObject> objects = new ArrayList<>();
     try (ResourceIterator<Instance> it = instances.iterator()) {
       while (it.hasNext()) {
-        Instance instance = it.next();
+        objects.add(convert(it.next(), model));
+      }
+    }
+    return objects;
+  }
 
-        QName typeName = instance.getDefinition().getName();
-        Class<? extends ModelObject> modelClass = model.getModelClass(typeName);
+  /**
+   * Create an iterator that converts the instances of the given collection to
+   * model objects on demand, one instance per call to
+   * {@link ResourceIterator#next()}. Conversion errors are reported as
+   * {@link IllegalStateException}s. The iterator must be closed to release the
+   * underlying instance iterator.
+   *
+   * @param instances the instances to convert
+   * @param model the model information
+   * @return the iterator over the converted model objects
+   */
+  public ResourceIterator<ModelObject> iterate(InstanceCollection instances, ModelInfo model) {
+    return new ModelObjectIterator(instances.iterator(), model, this);
+  }
 
-        if (modelClass == null) {
-          throw new IllegalStateException("Could not find model class for type " + typeName);
-        }
+  /**
+   * Create a sequential stream that converts the instances of the given
+   * collection to model objects on demand. The stream must be closed to
+   * release the underlying instance iterator, e.g. using a
+   * try-with-resources statement.
+   *
+   * @param instances the instances to convert
+   * @param model the model information
+   * @return the stream of converted model objects
+   * @see #iterate(InstanceCollection, ModelInfo)
+   */
+  public Stream<ModelObject> stream(InstanceCollection instances, ModelInfo model) {
+    ResourceIterator<ModelObject> it = iterate(instances, model);
+    int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+    Spliterator<ModelObject> spliterator = (instances.hasSize())
+        ? Spliterators.spliterator(it, instances.size(), characteristics)
+        : Spliterators.spliteratorUnknownSize(it, characteristics);
+    return StreamSupport.stream(spliterator, false).onClose(it::close);
+  }
+
+  ModelObject convert(Instance instance, ModelInfo model) throws InstantiationException, IllegalAccessException {
+    QName typeName = instance.getDefinition().getName();
+    Class<? extends ModelObject> modelClass = model.getModelClass(typeName);
 
-        ModelObject object = convert(instance, modelClass);
-        objects.add(object);
+    if (modelClass == null) {
+      IllegalStateException e = new IllegalStateException("Could not find model class for type " + typeName);
+      if (listener != null) {
+        listener.conversionFailed(null, ConversionListener.Direction.TO_MODEL, e);
       }
+      throw e;
     }
-    return objects;
+
+    return convert(instance, modelClass);
   }
 
   public Instance convert(ModelObject object, TypeIndex schema) throws IllegalArgumentException, IllegalAccessException {
@@ -97,7 +244,11 @@ public class InstanceConverter {
     TypeDefinition type = schema.getType(typeName);
 
     if (type == null) {
-      throw new IllegalStateException("Type for model class not found in the given schema");
+      IllegalStateException e = new IllegalStateException("Type for model class not found in the given schema");
+      if (listener != null) {
+        listener.conversionFailed(object.getClass(), ConversionListener.Direction.TO_INSTANCE, e);
+      }
+      throw e;
     }
 
     return convert(object, type);
@@ -105,29 +256,64 @@ public class InstanceConverter {
 
   private Instance convert(ModelObject object, TypeDefinition type) throws IllegalArgumentException, IllegalAccessException {
     MutableInstance result = new DefaultInstance(type, null);
+    writeProperties(object, result);
+    return result;
+  }
 
-    for (Field field : getAllFields(object.getClass())) {
-      addFieldProperties(result, object, field);
+  private void writeProperties(Object object, MutableGroup target) throws IllegalArgumentException, IllegalAccessException {
+    if (listener == null) {
+      doWriteProperties(object, target);
+      return;
     }
 
-    return result;
+    int[] currentDepth = depth.get();
+    int level = ++currentDepth[0];
+    long start = (level == 1) ? (System.nanoTime()) : (0);
+    try {
+      doWriteProperties(object, target);
+      listener.objectConverted(object.getClass(), ConversionListener.Direction.TO_INSTANCE,
+          countValues(target), level);
+      if (level == 1) {
+        listener.conversionCompleted(object.getClass(), ConversionListener.Direction.TO_INSTANCE,
+            System.nanoTime() - start);
+      }
+    } catch (RuntimeException | IllegalAccessException e) {
+      if (level == 1) {
+        listener.conversionFailed(object.getClass(), ConversionListener.Direction.TO_INSTANCE, e);
+      }
+      throw e;
+    } finally {
+      currentDepth[0]--;
+    }
+  }
+
+  private void doWriteProperties(Object object, MutableGroup target) throws IllegalArgumentException, IllegalAccessException {
+    ModelConverter<Object> converter = getConverter(object.getClass());
+    if (converter != null) {
+      converter.write(object, target, this);
+    }
+    else {
+      for (PropertyPlan property : getPlan(object.getClass()).getProperties()) {
+        addFieldProperties(target, object, property);
+      }
+    }
   }
 
   private void addFieldProperties(MutableGroup result, Object object,
-      Field field) throws IllegalArgumentException, IllegalAccessException {
-    Object value = field.get(object);
+      PropertyPlan property) throws IllegalArgumentException, IllegalAccessException {
+    Object value = property.get(object);
     if (value == null) {
       // ignore null values
       return;
     }
-    if (field.isAnnotationPresent(Multiple.class) && value instanceof Collection) {
+    if (property.isMultiple() && value instanceof Collection) {
       // ignore empty collection properties
       if (((Collection<?>) value).isEmpty()) {
         return;
       }
     }
 
-    if (field.isAnnotationPresent(Value.class)) {
+    if (property.isValue()) {
       // instance value
       if (result instanceof MutableInstance) {
         ((MutableInstance) result).setValue(value);
@@ -139,28 +325,35 @@ public class InstanceConverter {
     else {
       // named property or group
 
-      if (field.isAnnotationPresent(Multiple.class)) {
+      if (property.isMultiple()) {
         // collection property
         if (!(value instanceof Collection<?>)) {
           throw new IllegalStateException("Wrong value type for collection property");
         }
 
         for (Object singleValue : (Collection<?>) value) {
-          addFieldProperty(result, singleValue, field);
+          addProperty(result, property.getName(), singleValue);
         }
       }
       else {
         // single property
-        addFieldProperty(result, value, field);
+        addProperty(result, property.getName(), value);
       }
     }
   }
 
-  private void addFieldProperty(MutableGroup result, Object value, Field field) throws IllegalArgumentException, IllegalAccessException {
-    Named named = field.getAnnotation(Named.class);
-    QName fieldName = new QName(named.namespace(), named.value());
-
-    ChildDefinition<?> fieldDef = result.getDefinition().getChild(fieldName);
+  /**
+   * Add a single property value to an instance or group. Model objects and
+   * group objects are converted to instances or groups.
+   *
+   * @param result the instance or group to add the property value to
+   * @param fieldName the property name
+   * @param value the property value
+   * @throws IllegalArgumentException if a field value cannot be converted
+   * @throws IllegalAccessException if a model field cannot be accessed
+   */
+  public void addProperty(MutableGroup result, QName fieldName, Object value) throws IllegalArgumentException, IllegalAccessException {
+    ChildDefinition<?> fieldDef = getChild(result.getDefinition(), fieldName);
     if (fieldDef == null) {
       throw new IllegalStateException("Definition of field not found");
     }
@@ -180,119 +373,176 @@ public class InstanceConverter {
     else {
       // assuming group/choice
       MutableGroup group = new DefaultGroup(fieldDef.asGroup());
-      for (Field groupField : getAllFields(value.getClass())) {
-        addFieldProperties(group, value, groupField);
-      }
+      writeProperties(value, group);
       result.addProperty(fieldName, group);
     }
   }
 
-  private List<Field> getAllFields(Class<?> clazz) {
-    List<Field> fields = fieldCache.get(clazz);
-    if (fields != null) {
-      return Collections.unmodifiableList(fields);
-    }
+  /**
+   * Get the simple value to assign to a model object property, deduplicated
+   * if the converter was configured with a {@link ValueInterner}.
+   *
+   * @param property the property name, <code>null</code> for the instance
+   *   value
+   * @param value the simple value
+   * @return the value to assign
+   */
+  public Object intern(QName property, Object value) {
+    return (interner == null) ? (value) : (interner.intern(property, value));
+  }
 
-    // collect fields
-    fields = new ArrayList<>();
+  private ChildDefinition<?> getChild(DefinitionGroup definition, QName name) {
+    DefinitionBinding binding = bindings.get(definition);
+    if (binding == null) {
+      binding = new DefinitionBinding(definition);
+      DefinitionBinding existing = bindings.putIfAbsent(definition, binding);
+      if (existing != null) {
+        binding = existing;
+      }
+    }
 
-    // super class fields
-    if (clazz.getSuperclass() != null) {
-      fields.addAll(getAllFields(clazz.getSuperclass()));
+    if (binding.getDefinition() != definition) {
+      // equal but distinct definition, e.g. from another schema instance
+      return definition.getChild(name);
     }
 
-    // declared fields
-    for (Field field : clazz.getDeclaredFields()) {
-      if (field.isAnnotationPresent(Named.class) || field.isAnnotationPresent(Value.class)) {
-        // only add if it's a Named or Value field
-        field.setAccessible(true);
-        fields.add(field);
-      }
+    return binding.getChild(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ModelConverter<Object> getConverter(Class<?> clazz) {
+    if (converters == null) {
+      return null;
     }
+    return (ModelConverter<Object>) converters.getConverter(clazz);
+  }
 
-    fieldCache.put(clazz, fields);
-    return Collections.unmodifiableList(fields);
+  private ConversionPlan getPlan(Class<?> clazz) {
+    return plans.get(clazz);
   }
 
   private QName getName(Class<? extends ModelObject> clazz) {
-    Named named = clazz.getAnnotation(Named.class);
-    if (named != null) {
-      return new QName(named.namespace(), named.value());
+    QName name = getPlan(clazz).getName();
+    if (name != null) {
+      return name;
     }
     throw new IllegalStateException("Class does not have a name annotation");
   }
 
   public <T extends ModelObject> T convert(Instance instance, Class<T> modelClass) throws InstantiationException, IllegalAccessException {
-    T result = modelClass.newInstance();
+    return read(instance, modelClass);
+  }
 
-    for (Field field : getAllFields(modelClass)) {
-      setField(instance, result, field);
+  /**
+   * Create a model or group object from an instance or group.
+   *
+   * @param source the instance or group
+   * @param modelClass the model or group class
+   * @return the populated model or group object
+   * @throws InstantiationException if an object cannot be created
+   * @throws IllegalAccessException if a model field cannot be accessed
+   */
+  public <T> T read(Group source, Class<T> modelClass) throws InstantiationException, IllegalAccessException {
+    if (listener == null) {
+      return doRead(source, modelClass);
+    }
+
+    int[] currentDepth = depth.get();
+    int level = ++currentDepth[0];
+    long start = (level == 1) ? (System.nanoTime()) : (0);
+    try {
+      T result = doRead(source, modelClass);
+      listener.objectConverted(modelClass, ConversionListener.Direction.TO_MODEL, countValues(source), level);
+      if (level == 1) {
+        listener.conversionCompleted(modelClass, ConversionListener.Direction.TO_MODEL, System.nanoTime() - start);
+      }
+      return result;
+    } catch (RuntimeException | InstantiationException | IllegalAccessException e) {
+      if (level == 1) {
+        listener.conversionFailed(modelClass, ConversionListener.Direction.TO_MODEL, e);
+      }
+      throw e;
+    } finally {
+      currentDepth[0]--;
+    }
+  }
+
+  private <T> T doRead(Group source, Class<T> modelClass) throws InstantiationException, IllegalAccessException {
+    ModelConverter<Object> converter = getConverter(modelClass);
+    if (converter != null) {
+      T result = modelClass.cast(converter.newObject());
+      converter.read(source, result, this);
+      return result;
+    }
+
+    ConversionPlan plan = getPlan(modelClass);
+    T result = modelClass.cast(plan.newInstance());
+
+    for (PropertyPlan property : plan.getProperties()) {
+      setField(source, result, property);
     }
 
     return result;
   }
 
-  private void setField(Group parent, Object modelObject, Field field) throws IllegalArgumentException, IllegalAccessException, InstantiationException {
-    if (field.isAnnotationPresent(Value.class)) {
+  /**
+   * Count the property values of an instance or group, including the
+   * instance value.
+   */
+  private static int countValues(Group group) {
+    int count = 0;
+    if (group instanceof Instance && ((Instance) group).getValue() != null) {
+      count++;
+    }
+    for (QName name : group.getPropertyNames()) {
+      Object[] values = group.getProperty(name);
+      if (values != null) {
+        count += values.length;
+      }
+    }
+    return count;
+  }
+
+  private void setField(Group parent, Object modelObject, PropertyPlan property) throws IllegalArgumentException, IllegalAccessException, InstantiationException {
+    if (property.isValue()) {
       // instance value
       if (parent instanceof Instance) {
         Object value = ((Instance) parent).getValue();
         // can only be a simple value (no model or group class)
-        field.set(modelObject, value);
+        property.set(modelObject, intern(null, value));
       }
     }
     else {
-      Named named = field.getAnnotation(Named.class);
-      QName fieldName = new QName(named.namespace(), named.value());
-
-      Object[] values = parent.getProperty(fieldName);
+      Object[] values = parent.getProperty(property.getName());
       if (values != null && values.length > 0) {
         for (Object value : values) {
-          setFieldValue(value, modelObject, field);
+          setFieldValue(value, modelObject, property);
         }
       }
     }
   }
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-  private void setFieldValue(Object value, Object modelObject, Field field) throws InstantiationException, IllegalAccessException {
+  private void setFieldValue(Object value, Object modelObject, PropertyPlan property) throws InstantiationException, IllegalAccessException {
     // prepare value
     if (value instanceof Group) {
       // complex value field
-
-      // determine value class
-      Class<?> valueClass;
-      if (field.isAnnotationPresent(Multiple.class)) {
-        Type parameterType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-        valueClass = (Class<?>) parameterType;
-      }
-      else {
-        valueClass = field.getType();
-      }
-
-      Object groupObject = valueClass.newInstance();
-
-      for (Field groupField : getAllFields(valueClass)) {
-        setField((Group) value, groupObject, groupField);
-      }
-
-      // use converted object
-      value = groupObject;
+      // -> use converted object
+      value = read((Group) value, property.getElementClass());
     }
     else {
       // simple value field
-      // -> nothing to do, using value as-is
+      // -> use value as-is or deduplicated value
+      value = intern(property.getName(), value);
     }
 
     // add/set field value
-    if (field.isAnnotationPresent(Multiple.class)) {
+    if (property.isMultiple()) {
       // add value to list
-      Object list = field.get(modelObject);
-      ((Collection) list).add(value);
+      property.add(modelObject, value);
     }
     else {
       // single value
-      field.set(modelObject, value);
+      property.set(modelObject, value);
     }
   }
 
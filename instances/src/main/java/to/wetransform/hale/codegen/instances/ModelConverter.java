@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import eu.esdihumboldt.hale.common.instance.model.Group;
+import eu.esdihumboldt.hale.common.instance.model.MutableGroup;
+
+/**
+ * Converts objects of a specific model or group class to and from instances
+ * or groups without reflection. Implementations are usually generated
+ * together with the model classes.
+ *
+ * @param <T> the model or group class
+ */
+public interface ModelConverter<T> {
+
+  /**
+   * @return a new, empty object of the model class
+   */
+  T newObject();
+
+  /**
+   * Populate a model object with the properties of the given instance or
+   * group.
+   *
+   * @param source the instance or group to read the properties from
+   * @param target the model object to populate
+   * @param converter the converter to use for nested objects
+   * @throws InstantiationException if a nested object cannot be created
+   * @throws IllegalAccessException if a nested object cannot be accessed
+   */
+  void read(Group source, T target, InstanceConverter converter) throws InstantiationException, IllegalAccessException;
+
+  /**
+   * Add the properties of a model object to the given instance or group.
+   *
+   * @param source the model object to write the properties of
+   * @param target the instance or group to populate
+   * @param converter the converter to use for nested objects
+   * @throws IllegalAccessException if a nested object cannot be accessed
+   */
+  void write(T source, MutableGroup target, InstanceConverter converter) throws IllegalAccessException;
+
+}
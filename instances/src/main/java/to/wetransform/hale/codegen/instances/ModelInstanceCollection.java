@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Instance collection backed by model objects. Model objects are converted to
+ * instances on demand while iterating, no instances are retained by the
+ * collection. Each iteration converts the model objects anew.
+ */
+public class ModelInstanceCollection implements InstanceCollection {
+
+  private final Iterable<? extends ModelObject> objects;
+  private final TypeIndex schema;
+  private final InstanceConverter converter;
+
+  /**
+   * Create a new instance collection backed by the given model objects.
+   *
+   * @param objects the model objects, if this is a {@link Collection} its
+   *   size is reported as size of the instance collection
+   * @param schema the schema to convert the model objects with
+   * @param converter the converter to use
+   */
+  public ModelInstanceCollection(Iterable<? extends ModelObject> objects, TypeIndex schema,
+      InstanceConverter converter) {
+    super();
+    this.objects = objects;
+    this.schema = schema;
+    this.converter = converter;
+  }
+
+  @Override
+  public ResourceIterator<Instance> iterator() {
+    final Iterator<? extends ModelObject> it = objects.iterator();
+    return new ResourceIterator<Instance>() {
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Instance next() {
+        try {
+          return converter.convert(it.next(), schema);
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException("Failed to convert model object to instance", e);
+        }
+      }
+
+      @Override
+      public void close() {
+        // nothing to release
+      }
+    };
+  }
+
+  @Override
+  public boolean hasSize() {
+    return objects instanceof Collection<?>;
+  }
+
+  @Override
+  public int size() {
+    if (objects instanceof Collection<?>) {
+      return ((Collection<?>) objects).size();
+    }
+    return UNKNOWN_SIZE;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    if (objects instanceof Collection<?>) {
+      return ((Collection<?>) objects).isEmpty();
+    }
+    return !objects.iterator().hasNext();
+  }
+
+  @Override
+  public InstanceCollection select(Filter filter) {
+    return FilteredInstanceCollection.applyFilter(this, filter);
+  }
+
+  @Override
+  public InstanceReference getReference(Instance instance) {
+    // instances are not retained and cannot be resolved by identifier
+    return new PseudoInstanceReference(instance);
+  }
+
+  @Override
+  public Instance getInstance(InstanceReference reference) {
+    if (reference instanceof PseudoInstanceReference) {
+      return ((PseudoInstanceReference) reference).getInstance();
+    }
+    return null;
+  }
+
+}
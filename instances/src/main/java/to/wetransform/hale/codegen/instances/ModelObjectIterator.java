@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import to.wetransform.hale.codegen.model.ModelInfo;
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Iterator that converts instances to model objects on demand, one instance
+ * per call to {@link #next()}.
+ */
+class ModelObjectIterator implements ResourceIterator<ModelObject> {
+
+  private final ResourceIterator<Instance> instances;
+  private final ModelInfo model;
+  private final InstanceConverter converter;
+
+  public ModelObjectIterator(ResourceIterator<Instance> instances, ModelInfo model, InstanceConverter converter) {
+    super();
+    this.instances = instances;
+    this.model = model;
+    this.converter = converter;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return instances.hasNext();
+  }
+
+  @Override
+  public ModelObject next() {
+    Instance instance = instances.next();
+    try {
+      return converter.convert(instance, model);
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Failed to convert instance to model object", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    instances.close();
+  }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
+import to.wetransform.hale.codegen.model.ModelInfo;
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Converts large numbers of instances or model objects in parallel. The input
+ * is read and split into batches on the calling thread, the batches are
+ * converted on an executor and the results are passed to a consumer on the
+ * calling thread, either in input order or in the order the batches complete.
+ * The number of batches in flight is bounded, so memory use does not depend
+ * on the size of the input.
+ */
+public class ParallelConverter {
+
+  /**
+   * Conversion of a single input object.
+   */
+  private interface Conversion<I, O> {
+
+    O convert(I input) throws InstantiationException, IllegalAccessException;
+
+  }
+
+  private final InstanceConverter converter;
+  private final Executor executor;
+
+  private int batchSize = 100;
+  private int maxBatchesInFlight = 2 * Runtime.getRuntime().availableProcessors();
+  private boolean ordered = true;
+
+  /**
+   * Create a parallel converter that uses the common fork-join pool.
+   *
+   * @param converter the converter for single objects
+   */
+  public ParallelConverter(InstanceConverter converter) {
+    this(converter, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a parallel converter.
+   *
+   * @param converter the converter for single objects
+   * @param executor the executor to run conversion batches on
+   */
+  public ParallelConverter(InstanceConverter converter, Executor executor) {
+    super();
+    this.converter = converter;
+    this.executor = executor;
+  }
+
+  /**
+   * @param batchSize the number of objects converted in one task
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @param maxBatchesInFlight the maximum number of batches that are
+   *   submitted or completed but not yet passed to the consumer
+   */
+  public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+    if (maxBatchesInFlight < 1) {
+      throw new IllegalArgumentException("At least one batch must be allowed in flight");
+    }
+    this.maxBatchesInFlight = maxBatchesInFlight;
+  }
+
+  /**
+   * @param ordered <code>true</code> if results should be passed to the
+   *   consumer in input order, <code>false</code> if they should be passed in
+   *   the order batches complete
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  /**
+   * Convert instances to model objects.
+   *
+   * @param instances the instances to convert
+   * @param model the model information
+   * @param consumer the consumer of the model objects, called on the calling
+   *   thread
+   * @throws InstantiationException if a model object cannot be created
+   * @throws IllegalAccessException if a model field cannot be accessed
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public void convert(InstanceCollection instances, final ModelInfo model,
+      Consumer<? super ModelObject> consumer) throws InstantiationException, IllegalAccessException, InterruptedException {
+    try (ResourceIterator<Instance> it = instances.iterator()) {
+      process(it, new Conversion<Instance, ModelObject>() {
+
+        @Override
+        public ModelObject convert(Instance input) throws InstantiationException, IllegalAccessException {
+          return converter.convert(input, model);
+        }
+      }, consumer);
+    }
+  }
+
+  /**
+   * Convert model objects to instances.
+   *
+   * @param objects the model objects to convert
+   * @param schema the schema containing the types of the model objects
+   * @param consumer the consumer of the instances, called on the calling
+   *   thread
+   * @throws IllegalAccessException if a model field cannot be accessed
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public void convert(Iterable<? extends ModelObject> objects, final TypeIndex schema,
+      Consumer<? super Instance> consumer) throws IllegalAccessException, InterruptedException {
+    try {
+      process(objects.iterator(), new Conversion<ModelObject, Instance>() {
+
+        @Override
+        public Instance convert(ModelObject input) throws IllegalAccessException {
+          return converter.convert(input, schema);
+        }
+      }, consumer);
+    } catch (InstantiationException e) {
+      // not thrown when creating instances
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private <I, O> void process(Iterator<? extends I> input, Conversion<I, O> conversion,
+      Consumer<? super O> consumer) throws InstantiationException, IllegalAccessException, InterruptedException {
+    if (ordered) {
+      processOrdered(input, conversion, consumer);
+    }
+    else {
+      processUnordered(input, conversion, consumer);
+    }
+  }
+
+  private <I, O> void processOrdered(Iterator<? extends I> input, Conversion<I, O> conversion,
+      Consumer<? super O> consumer) throws InstantiationException, IllegalAccessException, InterruptedException {
+    Deque<Future<List<O>>> inFlight = new ArrayDeque<>();
+    try {
+      while (input.hasNext()) {
+        if (inFlight.size() >= maxBatchesInFlight) {
+          // wait for the oldest batch
+          emit(inFlight.removeFirst(), consumer);
+        }
+
+        FutureTask<List<O>> task = new FutureTask<>(createTask(nextBatch(input), conversion));
+        executor.execute(task);
+        inFlight.addLast(task);
+      }
+
+      while (!inFlight.isEmpty()) {
+        emit(inFlight.removeFirst(), consumer);
+      }
+    } finally {
+      for (Future<List<O>> future : inFlight) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private <I, O> void processUnordered(Iterator<? extends I> input, Conversion<I, O> conversion,
+      Consumer<? super O> consumer) throws InstantiationException, IllegalAccessException, InterruptedException {
+    ExecutorCompletionService<List<O>> completion = new ExecutorCompletionService<>(executor);
+    // only batches not yet passed to the consumer, so completed results can be collected
+    Set<Future<List<O>>> inFlight = new HashSet<>();
+    try {
+      while (input.hasNext()) {
+        if (inFlight.size() >= maxBatchesInFlight) {
+          // wait for any batch
+          emit(takeCompleted(completion, inFlight), consumer);
+        }
+
+        inFlight.add(completion.submit(createTask(nextBatch(input), conversion)));
+      }
+
+      while (!inFlight.isEmpty()) {
+        emit(takeCompleted(completion, inFlight), consumer);
+      }
+    } finally {
+      for (Future<List<O>> future : inFlight) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private <O> Future<List<O>> takeCompleted(ExecutorCompletionService<List<O>> completion,
+      Set<Future<List<O>>> inFlight) throws InterruptedException {
+    Future<List<O>> batch = completion.take();
+    inFlight.remove(batch);
+    return batch;
+  }
+
+  private <I> List<I> nextBatch(Iterator<? extends I> input) {
+    List<I> batch = new ArrayList<>(batchSize);
+    while (batch.size() < batchSize && input.hasNext()) {
+      batch.add(input.next());
+    }
+    return batch;
+  }
+
+  private <I, O> Callable<List<O>> createTask(final List<I> batch, final Conversion<I, O> conversion) {
+    return new Callable<List<O>>() {
+
+      @Override
+      public List<O> call() throws Exception {
+        List<O> result = new ArrayList<>(batch.size());
+        for (I input : batch) {
+          result.add(conversion.convert(input));
+        }
+        return result;
+      }
+    };
+  }
+
+  private <O> void emit(Future<List<O>> batch, Consumer<? super O> consumer) throws InstantiationException, IllegalAccessException, InterruptedException {
+    List<O> results;
+    try {
+      results = batch.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof InstantiationException) {
+        throw (InstantiationException) cause;
+      }
+      if (cause instanceof IllegalAccessException) {
+        throw (IllegalAccessException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Conversion failed", cause);
+    }
+
+    for (O result : results) {
+      consumer.accept(result);
+    }
+  }
+
+}
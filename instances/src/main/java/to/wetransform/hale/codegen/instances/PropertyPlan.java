@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import javax.xml.namespace.QName;
+
+import to.wetransform.hale.codegen.model.Multiple;
+import to.wetransform.hale.codegen.model.Named;
+import to.wetransform.hale.codegen.model.Value;
+
+/**
+ * Pre-resolved information on how to convert a single field of a model class.
+ */
+final class PropertyPlan {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final String fieldName;
+  private final QName name;
+  private final boolean value;
+  private final boolean multiple;
+  private final Class<?> elementClass;
+  private final MethodHandle getter;
+  private final MethodHandle setter;
+
+  private PropertyPlan(String fieldName, QName name, boolean value, boolean multiple,
+      Class<?> elementClass, MethodHandle getter, MethodHandle setter) {
+    super();
+    this.fieldName = fieldName;
+    this.name = name;
+    this.value = value;
+    this.multiple = multiple;
+    this.elementClass = elementClass;
+    this.getter = getter;
+    this.setter = setter;
+  }
+
+  /**
+   * Create a plan for the given field. Primitive fields are accessed through
+   * the getter and setter of the model class, which use the boxed type and
+   * represent an absent value as <code>null</code>.
+   *
+   * @param field the field, must be annotated with {@link Named} or
+   *   {@link Value}
+   * @return the property plan
+   */
+  public static PropertyPlan create(Field field) {
+    boolean value = field.isAnnotationPresent(Value.class);
+    QName name = null;
+    if (!value) {
+      Named named = field.getAnnotation(Named.class);
+      name = new QName(named.namespace(), named.value());
+    }
+
+    boolean multiple = field.isAnnotationPresent(Multiple.class);
+    Class<?> elementClass;
+    if (multiple) {
+      Type parameterType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+      elementClass = (Class<?>) parameterType;
+    }
+    else {
+      elementClass = field.getType();
+    }
+
+    MethodHandle getter;
+    MethodHandle setter;
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      if (field.getType().isPrimitive()) {
+        // presence of the value is tracked by the model class
+        String suffix = field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
+        Method getterMethod = field.getDeclaringClass().getMethod("get" + suffix);
+        elementClass = getterMethod.getReturnType();
+        Method setterMethod = field.getDeclaringClass().getMethod("set" + suffix, elementClass);
+        getter = lookup.unreflect(getterMethod).asType(GETTER_TYPE);
+        setter = lookup.unreflect(setterMethod).asType(SETTER_TYPE);
+      }
+      else {
+        field.setAccessible(true);
+        getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+      }
+    } catch (IllegalAccessException | NoSuchMethodException e) {
+      throw new IllegalStateException("Unable to access field " + field, e);
+    }
+
+    return new PropertyPlan(field.getName(), name, value, multiple, elementClass, getter, setter);
+  }
+
+  /**
+   * @return the name of the Java field
+   */
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  /**
+   * @return the qualified name of the property, <code>null</code> for a value
+   *   field
+   */
+  public QName getName() {
+    return name;
+  }
+
+  /**
+   * @return if the field holds the instance value
+   */
+  public boolean isValue() {
+    return value;
+  }
+
+  /**
+   * @return if the field is a collection of property values
+   */
+  public boolean isMultiple() {
+    return multiple;
+  }
+
+  /**
+   * @return the class of a single property value
+   */
+  public Class<?> getElementClass() {
+    return elementClass;
+  }
+
+  /**
+   * Get the field value.
+   *
+   * @param target the object to get the field value from
+   * @return the field value
+   */
+  public Object get(Object target) {
+    try {
+      return (Object) getter.invokeExact(target);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException("Failed to get value of field " + fieldName, e);
+    }
+  }
+
+  /**
+   * Set the field value.
+   *
+   * @param target the object to set the field value on
+   * @param value the value to set
+   */
+  public void set(Object target, Object value) {
+    try {
+      setter.invokeExact(target, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException("Failed to set value of field " + fieldName, e);
+    }
+  }
+
+  /**
+   * Add a value to a collection field.
+   *
+   * @param target the object holding the collection
+   * @param value the value to add
+   */
+  @SuppressWarnings("unchecked")
+  public void add(Object target, Object value) {
+    ((Collection<Object>) get(target)).add(value);
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.instances;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Bounded table used by an {@link InstanceConverter} to deduplicate simple
+ * values while converting instances to model objects, e.g. code list values,
+ * namespaces, CRS identifiers or units that are repeated in many instances.
+ * Equal values are replaced by the first value of that kind that was added to
+ * the table, so model objects share a single value object.
+ *
+ * Which values are deduplicated is configured per value class, e.g.
+ * {@link String}, and per property name. Only values of immutable classes
+ * are deduplicated, as a shared mutable value like a {@link java.util.Date}
+ * or the list of an <code>xs:list</code> value could be changed through any
+ * of the objects referencing it: {@link String}, the wrappers of primitive
+ * types, {@link BigInteger}, {@link BigDecimal}, {@link QName} and
+ * {@link URI}. Values of other classes are used as-is, even for a selected
+ * property. Once the table is full, new values are no longer added, but
+ * values already in the table are still reused.
+ *
+ * An interner is thread-safe. It may be shared between converters to
+ * deduplicate values across conversions, or be used with a single converter
+ * to limit deduplication to its conversions. The interner should be
+ * configured before it is used for conversions.
+ */
+public class ValueInterner {
+
+  /**
+   * Default maximum number of values in the table.
+   */
+  public static final int DEFAULT_MAX_SIZE = 100_000;
+
+  /**
+   * Immutable value classes that may be shared between model objects.
+   */
+  private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(String.class,
+      Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+      Double.class, BigInteger.class, BigDecimal.class, QName.class, URI.class));
+
+  private final int maxSize;
+
+  private final ConcurrentMap<Object, Object> values = new ConcurrentHashMap<>();
+
+  private final Set<Class<?>> types = ConcurrentHashMap.newKeySet();
+  private final Set<QName> properties = ConcurrentHashMap.newKeySet();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder savedBytes = new LongAdder();
+
+  /**
+   * Create an interner with the default maximum size.
+   */
+  public ValueInterner() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Create an interner.
+   *
+   * @param maxSize the maximum number of values in the table
+   */
+  public ValueInterner(int maxSize) {
+    super();
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Maximum size must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Deduplicate all values of the given class, regardless of the property
+   * they are assigned to.
+   *
+   * @param type the value class, e.g. {@link String}
+   * @return this interner
+   * @throws IllegalArgumentException if the class is not one of the
+   *   supported immutable classes
+   */
+  public ValueInterner addType(Class<?> type) {
+    if (!IMMUTABLE_TYPES.contains(type)) {
+      throw new IllegalArgumentException("Only values of immutable classes can be deduplicated: " + type);
+    }
+    types.add(type);
+    return this;
+  }
+
+  /**
+   * Deduplicate all simple values of immutable classes of properties with
+   * the given name.
+   *
+   * @param property the property name
+   * @return this interner
+   */
+  public ValueInterner addProperty(QName property) {
+    properties.add(property);
+    return this;
+  }
+
+  /**
+   * Get the value to use instead of the given value.
+   *
+   * @param property the name of the property the value is assigned to,
+   *   <code>null</code> for an instance value
+   * @param value the value, may be <code>null</code>
+   * @return the equal value from the table, or the given value if it is not
+   *   deduplicated or was not in the table yet
+   */
+  public Object intern(QName property, Object value) {
+    if (value == null || !(types.contains(value.getClass())
+        || (property != null && properties.contains(property) && IMMUTABLE_TYPES.contains(value.getClass())))) {
+      return value;
+    }
+
+    Object existing = values.get(value);
+    if (existing == null && values.size() < maxSize) {
+      // size check is racy, the table may slightly exceed the maximum size
+      existing = values.putIfAbsent(value, value);
+    }
+
+    if (existing != null) {
+      hits.increment();
+      if (existing != value) {
+        savedBytes.add(estimateSize(value));
+      }
+      return existing;
+    }
+    else {
+      misses.increment();
+      return value;
+    }
+  }
+
+  /**
+   * @return the number of values replaced by a value from the table
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of values that were added to the table or that were
+   *   not in the table when it was full
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the number of values in the table
+   */
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * Get an estimate of the memory saved by deduplication, assuming that the
+   * replaced values are no longer referenced elsewhere.
+   *
+   * @return the estimated number of bytes saved
+   */
+  public long getSavedBytes() {
+    return savedBytes.sum();
+  }
+
+  /**
+   * Create a human readable summary of the deduplication.
+   *
+   * @return the summary
+   */
+  public String summary() {
+    return "interned values: " + size() + ", hits " + getHitCount() + ", misses " + getMissCount()
+        + ", ~" + (getSavedBytes() / 1024) + "KiB saved";
+  }
+
+  /**
+   * Remove all values from the table and reset the statistics. The
+   * configuration is retained.
+   */
+  public void clear() {
+    values.clear();
+    hits.reset();
+    misses.reset();
+    savedBytes.reset();
+  }
+
+  /**
+   * Estimate the shallow size of a value including its internal arrays,
+   * assuming a 64-bit JVM with compressed references.
+   */
+  static long estimateSize(Object value) {
+    if (value instanceof String) {
+      // object header, char array reference and hash + array header and chars
+      return 24 + align(16 + 2L * ((String) value).length());
+    }
+    if (value instanceof BigInteger) {
+      return 40 + align(16 + ((BigInteger) value).bitLength() / 8 + 4);
+    }
+    if (value instanceof BigDecimal) {
+      return 40 + estimateSize(((BigDecimal) value).unscaledValue());
+    }
+    // boxed primitives, dates and other small objects
+    return 24;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+}
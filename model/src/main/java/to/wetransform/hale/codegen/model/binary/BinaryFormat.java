@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.binary;
+
+/**
+ * Constants of the binary format written by {@link BinaryOutput}.
+ */
+class BinaryFormat {
+
+  /** Marks a <code>null</code> string or object */
+  static final int NULL = 0;
+
+  /** Marks a string that is not in the string table */
+  static final int STRING_LITERAL = 1;
+
+  /** Offset of string table indices */
+  static final int STRING_INDEX = 2;
+
+  /** Marks an object of the declared class */
+  static final int OBJECT_DECLARED = 1;
+
+  /** Marks an object written with the codec of its class */
+  static final int OBJECT_CODEC = 2;
+
+  /** Marks an object written with Java serialization */
+  static final int OBJECT_SERIALIZED = 3;
+
+  /**
+   * Maximum number of strings in the string table, further strings are
+   * written as literals so memory use is bounded for long streams.
+   */
+  static final int MAX_STRINGS = 1 << 16;
+
+  /**
+   * Number of objects written with Java serialization after which the
+   * serialization stream is reset, so memory use is bounded for long streams.
+   * Class descriptors are written again after a reset.
+   */
+  static final int SERIALIZATION_RESET_INTERVAL = 1024;
+
+  /**
+   * Maximum length of strings added to the string table.
+   */
+  static final int MAX_STRING_LENGTH = 256;
+
+  private BinaryFormat() {
+  }
+
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.binary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads model objects written by a {@link BinaryOutput}, using the codecs of
+ * a {@link CodecRegistry}.
+ */
+public class BinaryInput implements Closeable {
+
+  private final DataInputStream in;
+
+  private final CodecRegistry registry;
+
+  private final List<String> strings = new ArrayList<>();
+
+  /**
+   * Serialization stream for values without codec, created on first use and
+   * fed with the data of each value.
+   */
+  private ObjectInputStream objectIn;
+  private final SegmentInputStream serialized = new SegmentInputStream();
+
+  /**
+   * Create a binary input.
+   *
+   * @param in the input stream to read from, closed when the binary input is
+   *   closed
+   * @param registry the codec registry, usually the generated model
+   */
+  public BinaryInput(InputStream in, CodecRegistry registry) {
+    super();
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    this.registry = registry;
+  }
+
+  /**
+   * Read an object written with {@link BinaryOutput#writeObject(Object)}.
+   *
+   * @return the object, may be <code>null</code>
+   * @throws IOException if reading fails
+   */
+  public Object readObject() throws IOException {
+    return readObject(readVarInt());
+  }
+
+  /**
+   * Read an object written with
+   * {@link BinaryOutput#writeObject(Object, ObjectCodec)}.
+   *
+   * @param declared the codec of the declared class
+   * @return the object, may be <code>null</code>
+   * @throws IOException if reading fails
+   */
+  public <T> T readObject(ObjectCodec<T> declared) throws IOException {
+    int kind = readVarInt();
+    if (kind == BinaryFormat.OBJECT_DECLARED) {
+      return declared.read(this);
+    }
+    return declared.getType().cast(readObject(kind));
+  }
+
+  private Object readObject(int kind) throws IOException {
+    switch (kind) {
+    case BinaryFormat.NULL:
+      return null;
+    case BinaryFormat.OBJECT_CODEC:
+      String className = readString();
+      ObjectCodec<?> codec = registry.getCodec(className);
+      if (codec == null) {
+        throw new IOException("No codec available for class " + className);
+      }
+      return codec.read(this);
+    case BinaryFormat.OBJECT_SERIALIZED:
+      serialized.setData(readBytes());
+      if (objectIn == null) {
+        objectIn = new RegistryObjectInputStream(serialized);
+      }
+      try {
+        return objectIn.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Failed to read serialized object", e);
+      }
+    default:
+      throw new IOException("Invalid object kind " + kind);
+    }
+  }
+
+  /**
+   * @return the string, may be <code>null</code>
+   * @throws IOException if reading fails
+   */
+  public String readString() throws IOException {
+    int kind = readVarInt();
+    switch (kind) {
+    case BinaryFormat.NULL:
+      return null;
+    case BinaryFormat.STRING_LITERAL:
+      String value = new String(readBytes(), StandardCharsets.UTF_8);
+      if (strings.size() < BinaryFormat.MAX_STRINGS && value.length() <= BinaryFormat.MAX_STRING_LENGTH) {
+        strings.add(value);
+      }
+      return value;
+    default:
+      int index = kind - BinaryFormat.STRING_INDEX;
+      if (index >= strings.size()) {
+        throw new IOException("Invalid string table index " + index);
+      }
+      return strings.get(index);
+    }
+  }
+
+  /**
+   * @return the non-negative integer written with
+   *   {@link BinaryOutput#writeVarInt(int)}
+   * @throws IOException if reading fails
+   */
+  public int readVarInt() throws IOException {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      result |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  /**
+   * @return the long written with {@link BinaryOutput#writeLong(long)}
+   * @throws IOException if reading fails
+   */
+  public long readLong() throws IOException {
+    long encoded = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      encoded |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        // zig-zag decoding
+        return (encoded >>> 1) ^ -(encoded & 1);
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  /**
+   * @return the integer written with {@link BinaryOutput#writeInt(int)}
+   * @throws IOException if reading fails
+   */
+  public int readInt() throws IOException {
+    return (int) readLong();
+  }
+
+  /**
+   * @return the double
+   * @throws IOException if reading fails
+   */
+  public double readDouble() throws IOException {
+    return in.readDouble();
+  }
+
+  /**
+   * @return the float
+   * @throws IOException if reading fails
+   */
+  public float readFloat() throws IOException {
+    return in.readFloat();
+  }
+
+  /**
+   * @return the boolean
+   * @throws IOException if reading fails
+   */
+  public boolean readBoolean() throws IOException {
+    return in.readBoolean();
+  }
+
+  /**
+   * @return the big integer
+   * @throws IOException if reading fails
+   */
+  public BigInteger readBigInteger() throws IOException {
+    return new BigInteger(readBytes());
+  }
+
+  /**
+   * @return the big decimal
+   * @throws IOException if reading fails
+   */
+  public BigDecimal readBigDecimal() throws IOException {
+    BigInteger unscaled = readBigInteger();
+    return new BigDecimal(unscaled, readInt());
+  }
+
+  /**
+   * @return the milliseconds since the epoch of a date written with
+   *   {@link BinaryOutput#writeDate(java.util.Date)}
+   * @throws IOException if reading fails
+   */
+  public long readDate() throws IOException {
+    return readLong();
+  }
+
+  /**
+   * @return the timestamp
+   * @throws IOException if reading fails
+   */
+  public Timestamp readTimestamp() throws IOException {
+    Timestamp result = new Timestamp(readLong());
+    result.setNanos(readVarInt());
+    return result;
+  }
+
+  /**
+   * @return the byte array
+   * @throws IOException if reading fails
+   */
+  public byte[] readBytes() throws IOException {
+    byte[] result = new byte[readVarInt()];
+    in.readFully(result);
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Input stream providing the serialized data of a single value at a time.
+   */
+  private static class SegmentInputStream extends InputStream {
+
+    private byte[] data = new byte[0];
+    private int position;
+
+    public void setData(byte[] data) {
+      this.data = data;
+      this.position = 0;
+    }
+
+    @Override
+    public int read() {
+      return (position < data.length) ? (data[position++] & 0xff) : (-1);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= data.length) {
+        return -1;
+      }
+      int count = Math.min(len, data.length - position);
+      System.arraycopy(data, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return data.length - position;
+    }
+
+  }
+
+  /**
+   * Resolves classes of serialized objects with the class loader of the
+   * registry, which is able to load the model classes.
+   */
+  private class RegistryObjectInputStream extends ObjectInputStream {
+
+    public RegistryObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      try {
+        return Class.forName(desc.getName(), false, registry.getClass().getClassLoader());
+      } catch (ClassNotFoundException e) {
+        return super.resolveClass(desc);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes model objects in a compact binary format, using the codecs of a
+ * {@link CodecRegistry}. Numbers are written as variable length integers,
+ * strings that occur repeatedly are written as index into a string table
+ * shared by all objects written to the stream. Values that have no codec,
+ * e.g. geometries, are written with a Java serialization stream shared by
+ * all objects written to the stream, so class descriptors are only written
+ * once. Read the objects with a {@link BinaryInput} using the same registry.
+ */
+public class BinaryOutput implements Closeable, Flushable {
+
+  private final DataOutputStream out;
+
+  private final CodecRegistry registry;
+
+  private final Map<String, Integer> strings = new HashMap<>();
+
+  /**
+   * Serialization stream for values without codec, created on first use.
+   * The data of each value is moved from the buffer to the output.
+   */
+  private ObjectOutputStream objectOut;
+  private ByteArrayOutputStream serialized;
+  private int serializedSinceReset;
+
+  /**
+   * Create a binary output.
+   *
+   * @param out the output stream to write to, closed when the binary output
+   *   is closed
+   * @param registry the codec registry, usually the generated model
+   */
+  public BinaryOutput(OutputStream out, CodecRegistry registry) {
+    super();
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.registry = registry;
+  }
+
+  /**
+   * Write an object with the codec of its class.
+   *
+   * @param value the object, may be <code>null</code>
+   * @throws IOException if writing fails
+   */
+  public void writeObject(Object value) throws IOException {
+    if (value == null) {
+      writeVarInt(BinaryFormat.NULL);
+      return;
+    }
+
+    String className = value.getClass().getName();
+    @SuppressWarnings("unchecked")
+    ObjectCodec<Object> codec = (ObjectCodec<Object>) registry.getCodec(className);
+    if (codec != null) {
+      writeVarInt(BinaryFormat.OBJECT_CODEC);
+      writeString(className);
+      codec.write(this, value);
+    }
+    else {
+      // fall back to Java serialization
+      writeVarInt(BinaryFormat.OBJECT_SERIALIZED);
+      if (objectOut == null) {
+        // the first value also includes the stream header
+        serialized = new ByteArrayOutputStream();
+        objectOut = new ObjectOutputStream(serialized);
+      }
+      else if (serializedSinceReset >= BinaryFormat.SERIALIZATION_RESET_INTERVAL) {
+        // release the references to the objects written so far
+        objectOut.reset();
+        serializedSinceReset = 0;
+      }
+      objectOut.writeObject(value);
+      objectOut.flush();
+      serializedSinceReset++;
+
+      writeVarInt(serialized.size());
+      serialized.writeTo(out);
+      serialized.reset();
+    }
+  }
+
+  /**
+   * Write an object, using the given codec if the object is of the declared
+   * class.
+   *
+   * @param value the object, may be <code>null</code>
+   * @param declared the codec of the declared class
+   * @throws IOException if writing fails
+   */
+  public <T> void writeObject(T value, ObjectCodec<T> declared) throws IOException {
+    if (value != null && value.getClass() == declared.getType()) {
+      writeVarInt(BinaryFormat.OBJECT_DECLARED);
+      declared.write(this, value);
+    }
+    else {
+      writeObject(value);
+    }
+  }
+
+  /**
+   * Write a string. Strings already written to the stream are written as
+   * index into the string table.
+   *
+   * @param value the string, may be <code>null</code>
+   * @throws IOException if writing fails
+   */
+  public void writeString(String value) throws IOException {
+    if (value == null) {
+      writeVarInt(BinaryFormat.NULL);
+      return;
+    }
+
+    Integer index = strings.get(value);
+    if (index != null) {
+      writeVarInt(BinaryFormat.STRING_INDEX + index);
+      return;
+    }
+
+    writeVarInt(BinaryFormat.STRING_LITERAL);
+    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    if (strings.size() < BinaryFormat.MAX_STRINGS && value.length() <= BinaryFormat.MAX_STRING_LENGTH) {
+      strings.put(value, strings.size());
+    }
+  }
+
+  /**
+   * Write a non-negative integer, e.g. a size or a tag, as variable length
+   * integer.
+   *
+   * @param value the integer
+   * @throws IOException if writing fails
+   */
+  public void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Write a long as variable length integer.
+   *
+   * @param value the long, small absolute values use less space
+   * @throws IOException if writing fails
+   */
+  public void writeLong(long value) throws IOException {
+    // zig-zag encoding
+    long encoded = (value << 1) ^ (value >> 63);
+    while ((encoded & ~0x7fL) != 0) {
+      out.writeByte((int) ((encoded & 0x7f) | 0x80));
+      encoded >>>= 7;
+    }
+    out.writeByte((int) encoded);
+  }
+
+  /**
+   * Write an integer as variable length integer.
+   *
+   * @param value the integer, small absolute values use less space
+   * @throws IOException if writing fails
+   */
+  public void writeInt(int value) throws IOException {
+    writeLong(value);
+  }
+
+  /**
+   * @param value the double to write
+   * @throws IOException if writing fails
+   */
+  public void writeDouble(double value) throws IOException {
+    out.writeDouble(value);
+  }
+
+  /**
+   * @param value the float to write
+   * @throws IOException if writing fails
+   */
+  public void writeFloat(float value) throws IOException {
+    out.writeFloat(value);
+  }
+
+  /**
+   * @param value the boolean to write
+   * @throws IOException if writing fails
+   */
+  public void writeBoolean(boolean value) throws IOException {
+    out.writeBoolean(value);
+  }
+
+  /**
+   * @param value the big integer to write
+   * @throws IOException if writing fails
+   */
+  public void writeBigInteger(BigInteger value) throws IOException {
+    writeBytes(value.toByteArray());
+  }
+
+  /**
+   * @param value the big decimal to write
+   * @throws IOException if writing fails
+   */
+  public void writeBigDecimal(BigDecimal value) throws IOException {
+    writeBigInteger(value.unscaledValue());
+    writeInt(value.scale());
+  }
+
+  /**
+   * Write a date as milliseconds since the epoch.
+   *
+   * @param value the date to write
+   * @throws IOException if writing fails
+   */
+  public void writeDate(Date value) throws IOException {
+    writeLong(value.getTime());
+  }
+
+  /**
+   * Write a timestamp as milliseconds since the epoch and nanoseconds.
+   *
+   * @param value the timestamp to write
+   * @throws IOException if writing fails
+   */
+  public void writeTimestamp(Timestamp value) throws IOException {
+    writeLong(value.getTime());
+    writeVarInt(value.getNanos());
+  }
+
+  /**
+   * Write a byte array prefixed with its length.
+   *
+   * @param value the bytes to write
+   * @throws IOException if writing fails
+   */
+  public void writeBytes(byte[] value) throws IOException {
+    writeVarInt(value.length);
+    out.write(value);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.binary;
+
+/**
+ * Provides {@link ObjectCodec}s for model and group classes.
+ */
+public interface CodecRegistry {
+
+  /**
+   * Get the codec for a model or group class.
+   *
+   * @param className the binary name of the model or group class
+   * @return the codec or <code>null</code> if none is available for the
+   *   class
+   */
+  ObjectCodec<?> getCodec(String className);
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.binary;
+
+import java.io.IOException;
+
+/**
+ * Encodes objects of a specific model or group class in a compact binary
+ * format. Implementations are usually generated together with the model
+ * classes.
+ *
+ * @param <T> the model or group class
+ */
+public interface ObjectCodec<T> {
+
+  /**
+   * @return the model or group class
+   */
+  Class<T> getType();
+
+  /**
+   * Write the properties of an object.
+   *
+   * @param out the binary output
+   * @param source the object to write
+   * @throws IOException if writing fails
+   */
+  void write(BinaryOutput out, T source) throws IOException;
+
+  /**
+   * Read an object written with {@link #write(BinaryOutput, Object)}.
+   *
+   * @param in the binary input
+   * @return the object
+   * @throws IOException if reading fails
+   */
+  T read(BinaryInput in) throws IOException;
+
+}
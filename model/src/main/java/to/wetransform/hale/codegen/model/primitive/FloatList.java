@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.primitive;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * List of <code>float</code> values backed by a primitive array. Used by
+ * generated model classes for repeated float properties instead of a list of
+ * boxed values. The list does not accept <code>null</code> elements.
+ */
+public class FloatList extends AbstractList<Float> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final float[] EMPTY = new float[0];
+
+  private transient float[] values;
+  private int size;
+
+  /**
+   * Create an empty list.
+   */
+  public FloatList() {
+    super();
+    values = EMPTY;
+  }
+
+  /**
+   * Create an empty list.
+   *
+   * @param initialCapacity the initial capacity
+   */
+  public FloatList(int initialCapacity) {
+    super();
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    values = (initialCapacity == 0) ? (EMPTY) : (new float[initialCapacity]);
+  }
+
+  /**
+   * Create a list with the given values.
+   *
+   * @param values the values to add
+   */
+  public FloatList(Collection<? extends Float> values) {
+    this(values.size());
+    addAll(values);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Float get(int index) {
+    return getFloat(index);
+  }
+
+  /**
+   * Get a value without boxing.
+   *
+   * @param index the index of the value
+   * @return the value
+   */
+  public float getFloat(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  @Override
+  public Float set(int index, Float value) {
+    return setFloat(index, value);
+  }
+
+  /**
+   * Replace a value without boxing.
+   *
+   * @param index the index of the value
+   * @param value the new value
+   * @return the previous value
+   */
+  public float setFloat(int index, float value) {
+    checkIndex(index);
+    float previous = values[index];
+    values[index] = value;
+    return previous;
+  }
+
+  @Override
+  public boolean add(Float value) {
+    return addFloat(value);
+  }
+
+  /**
+   * Add a value without boxing.
+   *
+   * @param value the value to add
+   * @return <code>true</code>
+   */
+  public boolean addFloat(float value) {
+    modCount++;
+    ensureCapacity(size + 1);
+    values[size++] = value;
+    return true;
+  }
+
+  @Override
+  public void add(int index, Float value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    float primitive = value;
+    modCount++;
+    ensureCapacity(size + 1);
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = primitive;
+    size++;
+  }
+
+  @Override
+  public Float remove(int index) {
+    checkIndex(index);
+    modCount++;
+    float previous = values[index];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    size = 0;
+  }
+
+  /**
+   * @return a copy of the values as array
+   */
+  public float[] toFloatArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Reduce the capacity of the list to its size.
+   */
+  public void trimToSize() {
+    if (values.length > size) {
+      values = (size == 0) ? (EMPTY) : (Arrays.copyOf(values, size));
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      int newCapacity = Math.max(Math.max(capacity, values.length + (values.length >> 1)), 8);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    for (int i = 0; i < size; i++) {
+      out.writeFloat(values[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    values = (size == 0) ? (EMPTY) : (new float[size]);
+    for (int i = 0; i < size; i++) {
+      values[i] = in.readFloat();
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Reads model objects from XML elements. Implementations are usually
+ * generated together with the model classes.
+ */
+public interface ElementReader {
+
+  /**
+   * Read a model object from the element at the current position of the
+   * reader, which must be a start element.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @param context the reader context
+   * @return the model object, with the reader positioned at the end of the
+   *   element, or <code>null</code> if the element does not represent a
+   *   model object, with the reader position unchanged
+   * @throws XMLStreamException if reading the element fails
+   */
+  ModelObject read(XMLStreamReader reader, XmlReaderContext context) throws XMLStreamException;
+
+}
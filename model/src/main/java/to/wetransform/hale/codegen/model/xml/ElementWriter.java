@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Writes model objects as XML elements. Implementations are usually
+ * generated together with the model classes.
+ */
+public interface ElementWriter {
+
+  /**
+   * Write a model object as element.
+   *
+   * @param writer the XML stream writer
+   * @param object the model object to write
+   * @param context the writer context
+   * @return if the object was written, <code>false</code> if there is no
+   *   element for the object and nothing was written
+   * @throws XMLStreamException if writing the element fails
+   */
+  boolean write(XMLStreamWriter writer, ModelObject object, XmlWriterContext context) throws XMLStreamException;
+
+  /**
+   * @return the namespaces used by the written elements mapped to their
+   *   preferred prefixes
+   */
+  default Map<String, String> getPrefixes() {
+    return Collections.emptyMap();
+  }
+
+}
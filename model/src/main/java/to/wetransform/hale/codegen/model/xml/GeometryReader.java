@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads geometries from XML elements, e.g. GML geometries.
+ */
+public interface GeometryReader {
+
+  /**
+   * Read a geometry from the element at the current position of the reader.
+   * The element is consumed in any case.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @return the geometry value to set on a model object, e.g. a hale
+   *   <code>GeometryProperty</code>, or <code>null</code> if the element is
+   *   not a supported geometry
+   * @throws XMLStreamException if reading the element fails
+   */
+  Object read(XMLStreamReader reader) throws XMLStreamException;
+
+}
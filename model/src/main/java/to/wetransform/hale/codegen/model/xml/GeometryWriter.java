@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes geometries as XML elements, e.g. GML geometries.
+ */
+public interface GeometryWriter {
+
+  /**
+   * Write a geometry as content of the current element.
+   *
+   * @param writer the XML stream writer
+   * @param geometry the geometry value of a model object, e.g. a hale
+   *   <code>GeometryProperty</code>
+   * @throws XMLStreamException if writing the geometry fails
+   */
+  void write(XMLStreamWriter writer, Object geometry) throws XMLStreamException;
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Streams model objects from an XML document, e.g. features from a GML
+ * file, without creating intermediate representations. Elements that are
+ * not recognized as model objects, like feature collections and member
+ * elements, are descended into. Reading errors are reported as
+ * {@link IllegalStateException}s.
+ */
+public class XmlModelReader implements Iterator<ModelObject>, Closeable {
+
+  private final XMLStreamReader reader;
+  private final InputStream in;
+  private final ElementReader elementReader;
+  private final XmlReaderContext context;
+
+  private ModelObject next;
+
+  /**
+   * Create a reader for an XML document.
+   *
+   * @param in the input stream, closed when the reader is closed
+   * @param elementReader the element reader, e.g. a generated model reader
+   * @param context the reader context
+   * @throws XMLStreamException if the document cannot be read
+   */
+  public XmlModelReader(InputStream in, ElementReader elementReader, XmlReaderContext context) throws XMLStreamException {
+    this(createFactory().createXMLStreamReader(in), in, elementReader, context);
+  }
+
+  /**
+   * Create a reader based on an XML stream reader.
+   *
+   * @param reader the XML stream reader, closed when the reader is closed
+   * @param elementReader the element reader, e.g. a generated model reader
+   * @param context the reader context
+   */
+  public XmlModelReader(XMLStreamReader reader, ElementReader elementReader, XmlReaderContext context) {
+    this(reader, null, elementReader, context);
+  }
+
+  private XmlModelReader(XMLStreamReader reader, InputStream in, ElementReader elementReader,
+      XmlReaderContext context) {
+    super();
+    this.reader = reader;
+    this.in = in;
+    this.elementReader = elementReader;
+    this.context = context;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        while (next == null && reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+            next = elementReader.read(reader, context);
+          }
+        }
+      } catch (XMLStreamException e) {
+        throw new IllegalStateException("Failed to read model object from XML", e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public ModelObject next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ModelObject result = next;
+    next = null;
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Failed to close XML stream reader", e);
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import to.wetransform.hale.codegen.model.ModelObject;
+
+/**
+ * Streams model objects to an XML document, e.g. features to a GML file.
+ * The objects are written one at a time into a container element, like a
+ * feature collection, each optionally wrapped in a member element.
+ */
+public class XmlModelWriter implements Closeable {
+
+  private final XMLStreamWriter writer;
+  private final OutputStream out;
+  private final ElementWriter elementWriter;
+  private final XmlWriterContext context;
+  private final QName member;
+
+  /**
+   * Create a writer for an XML document. The document and container element
+   * are started immediately.
+   *
+   * @param out the output stream, closed when the writer is closed
+   * @param elementWriter the element writer, e.g. a generated model writer
+   * @param context the writer context
+   * @param container the name of the container element
+   * @param member the name of the element each object is wrapped in,
+   *   <code>null</code> to write the objects directly into the container
+   * @throws XMLStreamException if starting the document fails
+   */
+  public XmlModelWriter(OutputStream out, ElementWriter elementWriter, XmlWriterContext context, QName container,
+      QName member) throws XMLStreamException {
+    super();
+    this.out = out;
+    this.elementWriter = elementWriter;
+    this.context = context;
+    this.member = member;
+
+    writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+    // declare all namespaces on the container
+    Map<String, String> prefixes = elementWriter.getPrefixes();
+    for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+      writer.setPrefix(prefix.getValue(), prefix.getKey());
+    }
+    writer.writeStartDocument("UTF-8", "1.0");
+    XmlValues.writeStartElement(writer, container.getNamespaceURI(), container.getLocalPart());
+    for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+      writer.writeNamespace(prefix.getValue(), prefix.getKey());
+    }
+  }
+
+  /**
+   * Write a model object.
+   *
+   * @param object the model object
+   * @throws XMLStreamException if writing the object fails
+   * @throws IllegalArgumentException if there is no element for the object
+   */
+  public void write(ModelObject object) throws XMLStreamException {
+    if (member != null) {
+      XmlValues.writeStartElement(writer, member.getNamespaceURI(), member.getLocalPart());
+    }
+    if (!elementWriter.write(writer, object, context)) {
+      throw new IllegalArgumentException("No element for model object of type " + object.getClass().getName());
+    }
+    if (member != null) {
+      writer.writeEndElement();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      writer.writeEndDocument();
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Failed to complete XML document", e);
+    } finally {
+      out.close();
+    }
+  }
+
+}
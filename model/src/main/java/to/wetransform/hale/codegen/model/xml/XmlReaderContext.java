@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Context for reading model objects from XML.
+ */
+public class XmlReaderContext {
+
+  private final GeometryReader geometryReader;
+
+  /**
+   * Create a context that skips geometries.
+   */
+  public XmlReaderContext() {
+    this(null);
+  }
+
+  /**
+   * Create a context that reads geometries with the given reader.
+   *
+   * @param geometryReader the geometry reader, <code>null</code> to skip
+   *   geometries
+   */
+  public XmlReaderContext(GeometryReader geometryReader) {
+    super();
+    this.geometryReader = geometryReader;
+  }
+
+  /**
+   * @return if geometries are read, otherwise they are skipped
+   */
+  public boolean hasGeometryReader() {
+    return geometryReader != null;
+  }
+
+  /**
+   * Read a geometry from the element at the current position of the reader.
+   * The element is consumed in any case.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @return the geometry or <code>null</code>
+   * @throws XMLStreamException if reading the element fails
+   */
+  public Object readGeometry(XMLStreamReader reader) throws XMLStreamException {
+    if (geometryReader == null) {
+      XmlValues.skipElement(reader);
+      return null;
+    }
+    return geometryReader.read(reader);
+  }
+
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Helpers for reading values with an {@link XMLStreamReader} and writing
+ * them with an {@link XMLStreamWriter}, used by the generated readers and
+ * writers.
+ */
+public class XmlValues {
+
+  private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+  private static volatile DatatypeFactory datatypeFactory;
+
+  private XmlValues() {
+  }
+
+  /**
+   * Read the text content of the current element. Nested elements are
+   * skipped.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @return the text content, the reader is positioned at the end of the
+   *   element
+   * @throws XMLStreamException if reading the element fails
+   */
+  public static String readText(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    int depth = 1;
+    while (depth > 0) {
+      switch (reader.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        depth++;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        depth--;
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        if (depth == 1) {
+          text.append(reader.getText());
+        }
+        break;
+      default:
+        // ignore
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Skip the current element including its content.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @throws XMLStreamException if reading the element fails
+   */
+  public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      switch (reader.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        depth++;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        depth--;
+        break;
+      default:
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Read the text content of the current element and convert it to the
+   * given type.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @param type the target type
+   * @return the value, <code>null</code> if the element is nil, the reader is
+   *   positioned at the end of the element
+   * @throws XMLStreamException if reading the element fails
+   * @throws IllegalArgumentException if the value cannot be converted
+   * @see #parse(String, Class)
+   */
+  public static <T> T readValue(XMLStreamReader reader, Class<T> type) throws XMLStreamException {
+    if (isNil(reader)) {
+      skipElement(reader);
+      return null;
+    }
+    return parse(readText(reader), type);
+  }
+
+  /**
+   * Determine if the current element has the given name.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @param namespace the namespace, an empty string for no namespace
+   * @param localName the local name
+   * @return if the element has the given name
+   */
+  public static boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+    return localName.equals(reader.getLocalName()) && namespace.equals(getNamespaceURI(reader));
+  }
+
+  /**
+   * Get the namespace of the current element.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @return the namespace, an empty string for no namespace
+   */
+  public static String getNamespaceURI(XMLStreamReader reader) {
+    String namespace = reader.getNamespaceURI();
+    return (namespace == null) ? ("") : (namespace);
+  }
+
+  /**
+   * Determine if the current element is marked as nil with
+   * <code>xsi:nil</code>.
+   *
+   * @param reader the XML stream reader positioned at a start element
+   * @return if the element is nil
+   */
+  public static boolean isNil(XMLStreamReader reader) {
+    String nil = reader.getAttributeValue(XSI_NAMESPACE, "nil");
+    return nil != null && parseBoolean(nil);
+  }
+
+  /**
+   * Parse a <code>xs:boolean</code> value.
+   *
+   * @param value the lexical value
+   * @return the boolean value
+   */
+  public static boolean parseBoolean(String value) {
+    String trimmed = value.trim();
+    return "true".equals(trimmed) || "1".equals(trimmed);
+  }
+
+  /**
+   * Convert a lexical XML value to the given Java type. Supports strings,
+   * primitive wrappers, big numbers, dates, lists and types with a static
+   * <code>valueOf(String)</code> method or a string constructor.
+   *
+   * @param value the lexical value, may be <code>null</code>
+   * @param type the target type
+   * @return the converted value or <code>null</code> if the value was
+   *   <code>null</code>
+   * @throws IllegalArgumentException if the value cannot be converted
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T parse(String value, Class<T> type) {
+    if (value == null) {
+      return null;
+    }
+    if (type == String.class || type == Object.class) {
+      return (T) value;
+    }
+
+    String trimmed = value.trim();
+    try {
+      if (type == Boolean.class) {
+        return (T) Boolean.valueOf(parseBoolean(trimmed));
+      }
+      if (type == Integer.class) {
+        return (T) Integer.valueOf(trimmed);
+      }
+      if (type == Long.class) {
+        return (T) Long.valueOf(trimmed);
+      }
+      if (type == Double.class) {
+        return (T) Double.valueOf(parseDouble(trimmed));
+      }
+      if (type == Float.class) {
+        return (T) Float.valueOf((float) parseDouble(trimmed));
+      }
+      if (type == Short.class) {
+        return (T) Short.valueOf(trimmed);
+      }
+      if (type == Byte.class) {
+        return (T) Byte.valueOf(trimmed);
+      }
+      if (type == BigInteger.class) {
+        return (T) new BigInteger(trimmed);
+      }
+      if (type == BigDecimal.class) {
+        return (T) new BigDecimal(trimmed);
+      }
+      if (type.isAssignableFrom(ArrayList.class)) {
+        // list type
+        List<String> items = (trimmed.isEmpty()) ? (new ArrayList<>())
+            : (new ArrayList<>(Arrays.asList(trimmed.split("\\s+"))));
+        return (T) items;
+      }
+      if (Date.class.isAssignableFrom(type)) {
+        long time = getDatatypeFactory().newXMLGregorianCalendar(trimmed).toGregorianCalendar().getTimeInMillis();
+        if (type == Timestamp.class) {
+          return (T) new Timestamp(time);
+        }
+        if (type == java.sql.Date.class) {
+          return (T) new java.sql.Date(time);
+        }
+        return (T) new Date(time);
+      }
+
+      try {
+        Method valueOf = type.getMethod("valueOf", String.class);
+        if (Modifier.isStatic(valueOf.getModifiers()) && type.isAssignableFrom(valueOf.getReturnType())) {
+          return type.cast(valueOf.invoke(null, trimmed));
+        }
+      } catch (NoSuchMethodException e) {
+        // try constructor
+      }
+      Constructor<T> constructor = type.getConstructor(String.class);
+      return constructor.newInstance(trimmed);
+    } catch (IllegalArgumentException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Cannot convert \"" + value + "\" to " + type.getName(), e);
+    }
+  }
+
+  /**
+   * Write an element with a simple value. A <code>null</code> value is
+   * written as nil element.
+   *
+   * @param writer the XML stream writer
+   * @param namespace the namespace, an empty string for no namespace
+   * @param localName the local name
+   * @param value the value, may be <code>null</code>
+   * @throws XMLStreamException if writing the element fails
+   */
+  public static void writeElement(XMLStreamWriter writer, String namespace, String localName, Object value)
+      throws XMLStreamException {
+    writeStartElement(writer, namespace, localName);
+    if (value == null) {
+      writeAttribute(writer, XSI_NAMESPACE, "nil", "true");
+    }
+    else {
+      writer.writeCharacters(format(value));
+    }
+    writer.writeEndElement();
+  }
+
+  /**
+   * Write an attribute with a simple value.
+   *
+   * @param writer the XML stream writer
+   * @param namespace the namespace, an empty string for no namespace
+   * @param localName the local name
+   * @param value the value
+   * @throws XMLStreamException if writing the attribute fails
+   */
+  public static void writeAttribute(XMLStreamWriter writer, String namespace, String localName, Object value)
+      throws XMLStreamException {
+    if (namespace.isEmpty()) {
+      writer.writeAttribute(localName, format(value));
+    }
+    else {
+      writer.writeAttribute(getPrefix(writer, namespace), namespace, localName, format(value));
+    }
+  }
+
+  /**
+   * Start an element. If the namespace is not bound to a prefix yet, it is
+   * declared on the element.
+   *
+   * @param writer the XML stream writer, the default namespace must not be
+   *   bound
+   * @param namespace the namespace, an empty string for no namespace
+   * @param localName the local name
+   * @throws XMLStreamException if writing the element fails
+   */
+  public static void writeStartElement(XMLStreamWriter writer, String namespace, String localName)
+      throws XMLStreamException {
+    if (namespace.isEmpty()) {
+      writer.writeStartElement(localName);
+    }
+    else {
+      String prefix = writer.getPrefix(namespace);
+      if (prefix == null) {
+        prefix = newPrefix(writer);
+        writer.writeStartElement(prefix, localName, namespace);
+        writer.setPrefix(prefix, namespace);
+        writer.writeNamespace(prefix, namespace);
+      }
+      else {
+        writer.writeStartElement(prefix, localName, namespace);
+      }
+    }
+  }
+
+  /**
+   * Get the prefix for a namespace, declaring it on the current element if
+   * needed.
+   */
+  private static String getPrefix(XMLStreamWriter writer, String namespace) throws XMLStreamException {
+    String prefix = writer.getPrefix(namespace);
+    if (prefix == null || prefix.isEmpty()) {
+      prefix = newPrefix(writer);
+      writer.setPrefix(prefix, namespace);
+      writer.writeNamespace(prefix, namespace);
+    }
+    return prefix;
+  }
+
+  private static String newPrefix(XMLStreamWriter writer) {
+    int index = 1;
+    while (true) {
+      String prefix = "ns" + index++;
+      String bound = writer.getNamespaceContext().getNamespaceURI(prefix);
+      if (bound == null || bound.isEmpty()) {
+        return prefix;
+      }
+    }
+  }
+
+  /**
+   * Convert a value to its lexical XML representation. Supports the types
+   * supported by {@link #parse(String, Class)}, other values are converted
+   * with {@link Object#toString()}.
+   *
+   * @param value the value
+   * @return the lexical value
+   */
+  public static String format(Object value) {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isInfinite(number)) {
+        return (number > 0) ? ("INF") : ("-INF");
+      }
+      return value.toString();
+    }
+    if (value instanceof BigDecimal) {
+      return ((BigDecimal) value).toPlainString();
+    }
+    if (value instanceof Date) {
+      XMLGregorianCalendar calendar;
+      try {
+        if (value instanceof java.sql.Date) {
+          // date in the default time zone, as when parsing
+          GregorianCalendar local = new GregorianCalendar();
+          local.setTime((Date) value);
+          calendar = getDatatypeFactory().newXMLGregorianCalendarDate(local.get(Calendar.YEAR),
+              local.get(Calendar.MONTH) + 1, local.get(Calendar.DAY_OF_MONTH), DatatypeConstants.FIELD_UNDEFINED);
+        }
+        else {
+          GregorianCalendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+          utc.setTime((Date) value);
+          calendar = getDatatypeFactory().newXMLGregorianCalendar(utc);
+        }
+      } catch (DatatypeConfigurationException e) {
+        throw new IllegalStateException("Cannot format date", e);
+      }
+      return calendar.toXMLFormat();
+    }
+    if (value instanceof Collection<?>) {
+      // list type
+      StringBuilder result = new StringBuilder();
+      for (Object item : (Collection<?>) value) {
+        if (result.length() > 0) {
+          result.append(' ');
+        }
+        result.append(format(item));
+      }
+      return result.toString();
+    }
+    return String.valueOf(value);
+  }
+
+  private static double parseDouble(String value) {
+    switch (value) {
+    case "INF":
+      return Double.POSITIVE_INFINITY;
+    case "-INF":
+      return Double.NEGATIVE_INFINITY;
+    default:
+      return Double.parseDouble(value);
+    }
+  }
+
+  private static DatatypeFactory getDatatypeFactory() throws DatatypeConfigurationException {
+    DatatypeFactory factory = datatypeFactory;
+    if (factory == null) {
+      factory = DatatypeFactory.newInstance();
+      datatypeFactory = factory;
+    }
+    return factory;
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 wetransform GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     wetransform GmbH <http://www.wetransform.to>
+ */
+
+package to.wetransform.hale.codegen.model.xml;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Context for writing model objects as XML.
+ */
+public class XmlWriterContext {
+
+  private final GeometryWriter geometryWriter;
+
+  /**
+   * Create a context that does not write geometries.
+   */
+  public XmlWriterContext() {
+    this(null);
+  }
+
+  /**
+   * Create a context that writes geometries with the given writer.
+   *
+   * @param geometryWriter the geometry writer, <code>null</code> to not
+   *   write geometries
+   */
+  public XmlWriterContext(GeometryWriter geometryWriter) {
+    super();
+    this.geometryWriter = geometryWriter;
+  }
+
+  /**
+   * @return if geometries are written, otherwise the properties of
+   *   geometry objects are written as elements
+   */
+  public boolean hasGeometryWriter() {
+    return geometryWriter != null;
+  }
+
+  /**
+   * Write a geometry as content of the current element, if a geometry
+   * writer is configured.
+   *
+   * @param writer the XML stream writer
+   * @param geometry the geometry
+   * @throws XMLStreamException if writing the geometry fails
+   */
+  public void writeGeometry(XMLStreamWriter writer, Object geometry) throws XMLStreamException {
+    if (geometryWriter != null) {
+      geometryWriter.write(writer, geometry);
+    }
+  }
+
+}